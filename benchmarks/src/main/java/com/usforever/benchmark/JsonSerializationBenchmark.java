@@ -0,0 +1,70 @@
+package com.usforever.benchmark;
+
+import com.usforever.model.Note;
+import com.usforever.model.Photo;
+import com.usforever.model.Timeline;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing the list responses of the three collection endpoints to JSON bytes, at the sizes the site
+ * has today (tens of entries) up to a few thousand, which is where a full-list response starts to hurt.
+ *
+ * Uses a default JsonMapper, which writes these models the same way as the one Spring Boot configures.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar JsonSerializationBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int size;
+
+    private JsonMapper jsonMapper;
+    private List<Note> notes;
+    private List<Photo> photos;
+    private List<Timeline> timeline;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = JsonMapper.builder().build();
+        notes = new ArrayList<>(size);
+        photos = new ArrayList<>(size);
+        timeline = new ArrayList<>(size);
+        LocalDateTime start = LocalDateTime.of(2015, 11, 8, 19, 30);
+        for (int i = 1; i <= size; i++) {
+            notes.add(new Note(i, "Note " + i,
+                    "Some words about the day we spent together, number " + i + ". ".repeat(20), start.plusDays(i)));
+            photos.add(new Photo(i, i % 3 == 0 ? "travel" : "us",
+                    "https://res.cloudinary.com/usforever/image/upload/v1700000000/photos/" + i + ".jpg"));
+            timeline.add(new Timeline(i, "Nov 08, 2015", "Milestone " + i,
+                    "What happened that day, in a sentence or two, number " + i + ".",
+                    "https://res.cloudinary.com/usforever/image/upload/v1700000000/timeline/" + i + ".jpg", "heart"));
+        }
+    }
+
+    @Benchmark
+    public byte[] notes() {
+        return jsonMapper.writeValueAsBytes(notes);
+    }
+
+    @Benchmark
+    public byte[] photos() {
+        return jsonMapper.writeValueAsBytes(photos);
+    }
+
+    @Benchmark
+    public byte[] timeline() {
+        return jsonMapper.writeValueAsBytes(timeline);
+    }
+}
@@ -0,0 +1,136 @@
+package com.usforever.benchmark;
+
+import com.usforever.dao.RevokedTokenDao;
+import com.usforever.security.jwt.JwtFilter;
+import com.usforever.security.jwt.TokenProvider;
+import com.usforever.service.RestTokenRevocationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole of JwtFilter.doFilter for one request: the public-route check, reading the bearer header and
+ * resolving the token, for a protected route carrying a valid token, one carrying a token with a bad
+ * signature (never cached, so it pays the full parse every time), one carrying a token revoked at logout,
+ * and a public route that skips the token. A thousand other tokens are revoked throughout, so the valid
+ * token's revocation check is the Bloom filter miss almost every request sees.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar JwtFilterBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtFilterBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    private static final int REVOKED_TOKENS = 1000;
+
+    private RestTokenRevocationService revocations;
+    private JwtFilter filter;
+    private MockHttpServletRequest validToken;
+    private MockHttpServletRequest badSignature;
+    private MockHttpServletRequest revokedToken;
+    private MockHttpServletRequest publicRoute;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        TokenProvider tokenProvider = TokenProviderBenchmark.newTokenProvider();
+        revocations = new RestTokenRevocationService(new RevokedIds(), new SimpleMeterRegistry(), 10000, 0.01, 3600);
+        revocations.afterSingletonsInstantiated();
+        filter = new JwtFilter(tokenProvider, revocations);
+
+        UsernamePasswordAuthenticationToken admin = new UsernamePasswordAuthenticationToken("someone@example.com", "",
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        String token = tokenProvider.createToken(admin, false);
+        String tampered = token.substring(0, token.length() - 4) + (token.endsWith("AAAA") ? "BBBB" : "AAAA");
+        String revoked = tokenProvider.createToken(admin, false);
+        TokenProvider.TokenId revokedId = TokenProvider.getTokenId(tokenProvider.getAuthentication(revoked));
+        revocations.revokeToken(revokedId.id(), revokedId.expiresAt());
+
+        validToken = request("GET", "/api/admin/caches", token);
+        badSignature = request("GET", "/api/admin/caches", tampered);
+        revokedToken = request("GET", "/api/admin/caches", revoked);
+        publicRoute = request("GET", "/api/notes", token);
+        response = new MockHttpServletResponse();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @TearDown
+    public void tearDown() {
+        revocations.destroy();
+    }
+
+    @Benchmark
+    public void protectedRouteValidToken() throws ServletException, IOException {
+        filter.doFilter(validToken, response, NO_OP_CHAIN);
+    }
+
+    @Benchmark
+    public void protectedRouteBadSignature() throws ServletException, IOException {
+        filter.doFilter(badSignature, response, NO_OP_CHAIN);
+    }
+
+    @Benchmark
+    public void protectedRouteRevokedToken() throws ServletException, IOException {
+        filter.doFilter(revokedToken, response, NO_OP_CHAIN);
+    }
+
+    @Benchmark
+    public void publicRoute() throws ServletException, IOException {
+        filter.doFilter(publicRoute, response, NO_OP_CHAIN);
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.addHeader(JwtFilter.AUTHORIZATION_HEADER, "Bearer " + token);
+        return request;
+    }
+
+    // Stands in for the table, so the benchmark needs no database
+    private static class RevokedIds implements RevokedTokenDao {
+
+        private final List<String> tokenIds = new ArrayList<>();
+
+        RevokedIds() {
+            for (int i = 0; i < REVOKED_TOKENS; i++) {
+                tokenIds.add(UUID.randomUUID().toString());
+            }
+        }
+
+        @Override
+        public void revokeToken(String tokenId, long remainingSeconds) {
+            tokenIds.add(tokenId);
+        }
+
+        @Override
+        public List<String> getRevokedTokenIds() {
+            return tokenIds;
+        }
+
+        @Override
+        public int deleteExpiredTokens() {
+            return 0;
+        }
+    }
+}
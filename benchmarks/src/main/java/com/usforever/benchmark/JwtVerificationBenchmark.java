@@ -0,0 +1,93 @@
+package com.usforever.benchmark;
+
+import com.usforever.security.jwt.TokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import javax.crypto.SecretKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the per-request cost of turning a bearer token into an Authentication.
+ *
+ * legacyValidateThenGetAuthentication reproduces what JwtFilter used to do: build a parser and verify the
+ * signature in validateToken, then build another parser and verify again in getAuthentication.
+ * singleParse is TokenProvider.getAuthentication (one shared parser, one verification) and cachedResolve is
+ * the path JwtFilter takes now, where every request after the first is a digest and a cache lookup.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar JwtVerificationBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtVerificationBenchmark {
+
+    private static final String AUTHORITIES_KEY = "auth";
+
+    private TokenProvider tokenProvider;
+    private SecretKey key;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        byte[] secret = new byte[64];
+        Arrays.fill(secret, (byte) 7);
+        String base64Secret = Base64.getEncoder().encodeToString(secret);
+
+        tokenProvider = new TokenProvider(base64Secret, 86400, 108000, 10000,
+                new SimpleMeterRegistry());
+        tokenProvider.afterPropertiesSet();
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
+
+        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        token = tokenProvider.createToken(
+                new UsernamePasswordAuthenticationToken("someone@example.com", "", authorities), false);
+    }
+
+    @Benchmark
+    public Authentication legacyValidateThenGetAuthentication() {
+        Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
+
+        Claims claims = Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+
+        Collection<? extends GrantedAuthority> authorities =
+                Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
+                        .map(SimpleGrantedAuthority::new)
+                        .collect(Collectors.toList());
+
+        User principal = new User(claims.getSubject(), "", authorities);
+
+        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    }
+
+    @Benchmark
+    public Authentication singleParse() {
+        return tokenProvider.getAuthentication(token);
+    }
+
+    @Benchmark
+    public Authentication cachedResolve() {
+        return tokenProvider.resolveAuthentication(token);
+    }
+}
@@ -0,0 +1,158 @@
+package com.usforever.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Closed-loop HTTP load test against a running server: a fixed number of clients each send a request,
+ * wait for the response and send the next, for a fixed time. Reports throughput and latency
+ * percentiles as one JSON object, so a platform-thread run and a virtual-thread run
+ * (VIRTUAL_THREADS=true) of the same build can be compared.
+ *
+ * Paths are picked at random from --paths; "{seed}" in a path becomes a random number, so gallery
+ * feed requests miss every cache and go to the database.
+ *
+ * Run with:
+ *   java -cp benchmarks/target/benchmarks.jar com.usforever.benchmark.LoadTest \
+ *       --label=platform --concurrency=400 --duration=30 --out=load-platform.json
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        List<String> paths = Arrays.asList(options.getOrDefault("paths",
+                "/api/photos?seed={seed}&limit=30,/api/notes,/api/timeline").split(","));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        String label = options.getOrDefault("label", "run");
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        run(client, baseUrl, paths, concurrency, warmup);
+        Result result = run(client, baseUrl, paths, concurrency, duration);
+
+        String json = result.toJson(label, concurrency, duration);
+        System.out.println(json);
+        if (options.containsKey("out")) {
+            Files.writeString(Path.of(options.get("out")), json + System.lineSeparator());
+        }
+    }
+
+    private static Result run(HttpClient client, String baseUrl, List<String> paths, int concurrency,
+                              Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<long[]>> clients = new ArrayList<>(concurrency);
+        int[] errors = new int[concurrency];
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                int clientIndex = c;
+                clients.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + pick(paths)))
+                                .timeout(Duration.ofSeconds(60))
+                                .GET()
+                                .build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors[clientIndex]++;
+                                continue;
+                            }
+                        } catch (IOException e) {
+                            errors[clientIndex]++;
+                            continue;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+
+            long[] all = new long[0];
+            for (Future<long[]> future : clients) {
+                long[] latencies = future.get();
+                int offset = all.length;
+                all = Arrays.copyOf(all, offset + latencies.length);
+                System.arraycopy(latencies, 0, all, offset, latencies.length);
+            }
+            Arrays.sort(all);
+            return new Result(all, Arrays.stream(errors).sum());
+        }
+    }
+
+    private static String pick(List<String> paths) {
+        String path = paths.get(ThreadLocalRandom.current().nextInt(paths.size()));
+        return path.replace("{seed}", Integer.toString(ThreadLocalRandom.current().nextInt(1_000_000)));
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private record Result(long[] sortedLatencies, int errors) {
+
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+        String toJson(String label, int concurrency, Duration duration) {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("label", label);
+            fields.put("concurrency", concurrency);
+            fields.put("durationSeconds", duration.toSeconds());
+            fields.put("requests", sortedLatencies.length);
+            fields.put("errors", errors);
+            fields.put("throughputPerSecond", sortedLatencies.length / (double) duration.toSeconds());
+            fields.put("p50Millis", percentileMillis(50));
+            fields.put("p99Millis", percentileMillis(99));
+            fields.put("maxMillis", percentileMillis(100));
+            return fields.entrySet().stream()
+                    .map(e -> "\"" + e.getKey() + "\": " + (e.getValue() instanceof String text ? "\"" + text + "\""
+                            : e.getValue() instanceof Double number ? String.format(Locale.ROOT, "%.2f", number)
+                            : e.getValue()))
+                    .collect(Collectors.joining(", ", "{", "}"));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.usforever.benchmark;
+
+import com.usforever.security.RateLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RateLimitFilter.doFilter for one request: a read, which only has its method looked at; a write that
+ * takes a token; and a write from a client that is out of tokens and gets 429. Each thread is its own
+ * client; add -t 4 on a machine with the cores for it to see the buckets updated concurrently.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar RateLimitFilterBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    @State(Scope.Benchmark)
+    public static class Filters {
+
+        // Refilled faster than a thread can drain it, so every write is let through
+        RateLimitFilter generous;
+        // One write a minute, so after the first every write is turned away
+        RateLimitFilter strict;
+
+        @Setup
+        public void setUp() {
+            generous = new RateLimitFilter(true, 10, 20, 1_000_000, Integer.MAX_VALUE, new SimpleMeterRegistry());
+            strict = new RateLimitFilter(true, 10, 20, 1, 1, new SimpleMeterRegistry());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private static final AtomicInteger NEXT = new AtomicInteger();
+
+        MockHttpServletRequest read;
+        MockHttpServletRequest write;
+        MockHttpServletResponse response;
+
+        @Setup
+        public void setUp() {
+            String address = "10.0.0." + NEXT.incrementAndGet();
+            read = request("GET", address);
+            write = request("POST", address);
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    @Benchmark
+    public void read(Filters filters, Client client) throws ServletException, IOException {
+        filters.generous.doFilter(client.read, client.response, NO_OP_CHAIN);
+    }
+
+    @Benchmark
+    public void writeAllowed(Filters filters, Client client) throws ServletException, IOException {
+        filters.generous.doFilter(client.write, client.response, NO_OP_CHAIN);
+    }
+
+    @Benchmark
+    public void writeRejected(Filters filters, Client client) throws ServletException, IOException {
+        filters.strict.doFilter(client.write, client.response, NO_OP_CHAIN);
+    }
+
+    private static MockHttpServletRequest request(String method, String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/notes");
+        // As the container sets it for a request to the DispatcherServlet, which is mapped to "/"
+        request.setServletPath("/api/notes");
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
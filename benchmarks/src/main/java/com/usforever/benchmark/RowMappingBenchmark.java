@@ -0,0 +1,160 @@
+package com.usforever.benchmark;
+
+import com.usforever.dao.RowMappers;
+import com.usforever.model.Note;
+import com.usforever.model.Photo;
+import com.usforever.model.Timeline;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.SqlRowSetResultSetExtractor;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapping a result set the old way (copy it into a disconnected SqlRowSet with queryForRowSet, then
+ * read each column by label in mapRowTo*) against the index-based mappers in RowMappers.
+ *
+ * The source rows live in an in-memory CachedRowSet so no database is needed; both paths read the same rows.
+ * With -prof gc, gc.alloc.rate.norm shows the bytes allocated per call.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar RowMappingBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMappingBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private CachedRowSet notes;
+    private CachedRowSet photos;
+    private CachedRowSet timeline;
+
+    @Setup
+    public void setUp() throws SQLException {
+        notes = rowSet(new String[]{"id", "title", "content", "created_at"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP});
+        for (int i = 1; i <= rows; i++) {
+            addRow(notes, i, "Note " + i, "Some words about the day we spent together, number " + i,
+                    new Timestamp(1_700_000_000_000L + i * 60_000L));
+        }
+
+        photos = rowSet(new String[]{"id", "category", "img_url", "shuffle_key"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER});
+        for (int i = 1; i <= rows; i++) {
+            addRow(photos, i, "dates", "https://res.cloudinary.com/usforever/image/upload/v1/photo-" + i + ".jpg", i * 7919);
+        }
+
+        timeline = rowSet(new String[]{"id", "date", "title", "description", "img_url", "icon"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR});
+        for (int i = 1; i <= rows; i++) {
+            addRow(timeline, i, "Nov 08, 2015", "Milestone " + i, "What happened that day, number " + i,
+                    "/timeline-photos/prom.png", "fa-heart");
+        }
+    }
+
+    @Benchmark
+    public List<Note> notesByLabelFromRowSet() throws SQLException {
+        notes.beforeFirst();
+        SqlRowSet rs = new SqlRowSetResultSetExtractor().extractData(notes);
+        List<Note> result = new ArrayList<>();
+        while (rs.next()) {
+            Note note = new Note();
+            note.setId(rs.getInt("id"));
+            note.setTitle(rs.getString("title"));
+            note.setContent(rs.getString("content"));
+            if (rs.getTimestamp("created_at") != null) {
+                note.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+            }
+            result.add(note);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Note> notesByIndex() throws SQLException {
+        notes.beforeFirst();
+        return new RowMapperResultSetExtractor<>(RowMappers.NOTE).extractData(notes);
+    }
+
+    @Benchmark
+    public List<Photo> photosByLabelFromRowSet() throws SQLException {
+        photos.beforeFirst();
+        SqlRowSet rs = new SqlRowSetResultSetExtractor().extractData(photos);
+        List<Photo> result = new ArrayList<>();
+        while (rs.next()) {
+            Photo photo = new Photo();
+            photo.setId(rs.getInt("id"));
+            photo.setCategory(rs.getString("category"));
+            photo.setImgUrl(rs.getString("img_url"));
+            photo.setShuffleKey(rs.getInt("shuffle_key"));
+            result.add(photo);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Photo> photosByIndex() throws SQLException {
+        photos.beforeFirst();
+        return new RowMapperResultSetExtractor<>(RowMappers.PHOTO).extractData(photos);
+    }
+
+    @Benchmark
+    public List<Timeline> timelineByLabelFromRowSet() throws SQLException {
+        timeline.beforeFirst();
+        SqlRowSet rs = new SqlRowSetResultSetExtractor().extractData(timeline);
+        List<Timeline> result = new ArrayList<>();
+        while (rs.next()) {
+            Timeline entry = new Timeline();
+            entry.setId(rs.getInt("id"));
+            entry.setDate(rs.getString("date"));
+            entry.setTitle(rs.getString("title"));
+            entry.setDescription(rs.getString("description"));
+            entry.setImgUrl(rs.getString("img_url"));
+            entry.setIcon(rs.getString("icon"));
+            result.add(entry);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Timeline> timelineByIndex() throws SQLException {
+        timeline.beforeFirst();
+        return new RowMapperResultSetExtractor<>(RowMappers.TIMELINE).extractData(timeline);
+    }
+
+    private static CachedRowSet rowSet(String[] labels, int[] types) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            metaData.setColumnName(i + 1, labels[i]);
+            metaData.setColumnLabel(i + 1, labels[i]);
+            metaData.setColumnType(i + 1, types[i]);
+        }
+        CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        rowSet.setMetaData(metaData);
+        return rowSet;
+    }
+
+    private static void addRow(CachedRowSet rowSet, Object... values) throws SQLException {
+        rowSet.moveToInsertRow();
+        for (int i = 0; i < values.length; i++) {
+            rowSet.updateObject(i + 1, values[i]);
+        }
+        rowSet.insertRow();
+        rowSet.moveToCurrentRow();
+    }
+}
@@ -0,0 +1,64 @@
+package com.usforever.benchmark;
+
+import com.usforever.security.jwt.TokenProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The three public TokenProvider operations on their own: signing a token at login, validateToken, and
+ * getAuthentication (one uncached parse and signature check).
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar TokenProviderBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenProviderBenchmark {
+
+    private TokenProvider tokenProvider;
+    private Authentication login;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenProvider = newTokenProvider();
+        login = new UsernamePasswordAuthenticationToken("someone@example.com", "",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        token = tokenProvider.createToken(login, false);
+    }
+
+    @Benchmark
+    public String createToken() {
+        return tokenProvider.createToken(login, false);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return tokenProvider.validateToken(token);
+    }
+
+    @Benchmark
+    public Authentication getAuthentication() {
+        return tokenProvider.getAuthentication(token);
+    }
+
+    static TokenProvider newTokenProvider() {
+        byte[] secret = new byte[64];
+        Arrays.fill(secret, (byte) 7);
+        TokenProvider tokenProvider =
+                new TokenProvider(Base64.getEncoder().encodeToString(secret), 86400, 108000, 10000, new SimpleMeterRegistry());
+        tokenProvider.afterPropertiesSet();
+        return tokenProvider;
+    }
+}
@@ -5,6 +5,7 @@ import MyApp from './App.vue'
 import { createStore } from './store'
 import router from './router'
 import axios from 'axios'
+import AuthService from './service/AuthService'
 
 
 
@@ -37,6 +38,7 @@ axios.defaults.baseURL = import.meta.env.VITE_REMOTE_API;
  */
 let currentToken = localStorage.getItem('token')
 let currentUser = JSON.parse(localStorage.getItem('user'));
+let currentRefreshToken = localStorage.getItem('refreshToken');
 
 if (currentToken) {
   // Set token axios requests
@@ -44,7 +46,36 @@ if (currentToken) {
 }
 
 // Create the Vuex store passing in the stored credentials
-const store = createStore(currentToken, currentUser);
+const store = createStore(currentToken, currentUser, currentRefreshToken);
+
+/*
+ * Access tokens only last a few minutes. When a request comes back 401, trade the refresh token for
+ * a new pair once and retry; concurrent 401s share the one refresh, since each refresh token works once.
+ */
+let refreshing = null;
+axios.interceptors.response.use(undefined, (error) => {
+  const request = error.config;
+  if (!error.response || error.response.status !== 401 || !store.state.refreshToken
+      || request._retried || request.url === '/api/refresh' || request.url === '/api/login') {
+    return Promise.reject(error);
+  }
+  refreshing = refreshing || AuthService.refresh(store.state.refreshToken)
+    .then((response) => {
+      store.commit('SET_AUTH_TOKEN', response.data.token);
+      store.commit('SET_REFRESH_TOKEN', response.data.refreshToken);
+      return response.data.token;
+    })
+    .catch((refreshError) => {
+      store.commit('LOGOUT');
+      throw refreshError;
+    })
+    .finally(() => { refreshing = null; });
+  return refreshing.then((token) => {
+    request._retried = true;
+    request.headers['Authorization'] = `Bearer ${token}`;
+    return axios(request);
+  });
+});
 
 
 
@@ -0,0 +1,23 @@
+import axios from "axios";
+
+export default {
+
+    login(user) {
+        return axios.post("/api/login", user);
+    },
+
+    register(user) {
+        return axios.post("/api/register", user);
+    },
+
+    // Trades the refresh token for a new access token and the next refresh token; each refresh token works once
+    refresh(refreshToken) {
+        return axios.post("/api/refresh", { refreshToken });
+    }
+
+    // Revokes the current access token and, with it, the refresh token's whole chain
+    logout(refreshToken) {
+        return axios.post("/api/logout", { refreshToken });
+    }
+
+}
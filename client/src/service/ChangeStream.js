@@ -0,0 +1,14 @@
+import axios from "axios";
+
+// Live "change" events from the server: { table: "notes" | "photos" | "timeline",
+// type: "created" | "updated" | "deleted" | "reset", ids: [...] }.
+// EventSource reconnects on its own if the connection drops.
+export default {
+
+    subscribe(onChange) {
+        const source = new EventSource(`${axios.defaults.baseURL || ""}/api/changes/stream`);
+        source.addEventListener("change", (e) => onChange(JSON.parse(e.data)));
+        return () => source.close();
+    }
+
+}
@@ -14,8 +14,10 @@ export default {
         return axios.post("/api/notes", note);
     },
 
-    updateNote(id, note) {
-        return axios.put(`/api/notes/${id}`, note);
+    // version is the one the note had when editing started; a 412 means someone else saved it since
+    updateNote(id, note, version) {
+        const headers = version ? { "If-Match": `"v${version}"` } : {};
+        return axios.put(`/api/notes/${id}`, note, { headers });
     },
     deleteNote(id) {
         return axios.delete(`/api/notes/${id}`);
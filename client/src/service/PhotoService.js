@@ -4,6 +4,12 @@ export default {
     getAllPhotos() {
         return axios.get("/api/photos");
     },
+    getPhotoFeed(seed, cursor, limit, category) {
+        return axios.get("/api/photos", { params: { seed, cursor, limit, category } });
+    },
+    getCategoryCounts() {
+        return axios.get("/api/photos/categories");
+    },
     getPhotosByCategory(category) {
         return axios.get(`/api/photos/category/${category}`);
     },
@@ -13,6 +19,16 @@ export default {
     createPhoto(photo) {
         return axios.post("/api/photos", photo);
     },
+    uploadPhoto(file, category) {
+        const formData = new FormData();
+        formData.append("file", file);
+        formData.append("category", category);
+        return axios.post("/api/photos/upload", formData);
+    },
+    // Uploaded media is served by the API, so its server-relative URLs need the API's origin
+    mediaUrl(url) {
+        return url && url.startsWith("/") ? `${axios.defaults.baseURL || ""}${url}` : url;
+    },
     deletePhoto(id) {
         return axios.delete(`/api/photos/${id}`);
     },
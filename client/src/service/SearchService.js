@@ -0,0 +1,10 @@
+import axios from "axios";
+
+export default {
+
+    // Hits come back best first; pass the response's nextCursor to get the next page
+    search(q, cursor) {
+        return axios.get("/api/search", { params: { q, cursor } });
+    }
+
+}
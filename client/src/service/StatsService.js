@@ -0,0 +1,9 @@
+import axios from "axios";
+
+export default {
+
+    getStats() {
+        return axios.get("/api/stats");
+    }
+
+}
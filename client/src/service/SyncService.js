@@ -0,0 +1,10 @@
+import axios from "axios";
+
+export default {
+
+    // Pass the token from the previous sync to get only what changed since; leave it out for everything
+    sync(since) {
+        return axios.get("/api/sync", { params: since ? { since } : {} });
+    }
+
+}
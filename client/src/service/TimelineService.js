@@ -11,8 +11,10 @@ export default{
     createTimeline(timeline){
         return axios.post("/api/timeline", timeline);
     },
-    updateTimeline(id, timeline){
-        return axios.put(`/api/timeline/${id}`, timeline);
+    // version is the one the entry had when editing started; a 412 means someone else saved it since
+    updateTimeline(id, timeline, version){
+        const headers = version ? { "If-Match": `"v${version}"` } : {};
+        return axios.put(`/api/timeline/${id}`, timeline, { headers });
     },
     deleteTimeline(id){
         return axios.delete(`/api/timeline/${id}`);
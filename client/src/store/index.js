@@ -1,10 +1,11 @@
 import { createStore as _createStore } from 'vuex';
 import axios from 'axios';
 
-export function createStore(currentToken, currentUser) {
+export function createStore(currentToken, currentUser, currentRefreshToken) {
   let store = _createStore({
     state: {
       token: currentToken || '',
+      refreshToken: currentRefreshToken || '',
       user: currentUser || {},
     },
     mutations: {
@@ -13,6 +14,10 @@ export function createStore(currentToken, currentUser) {
         localStorage.setItem('token', token);
         axios.defaults.headers.common['Authorization'] = `Bearer ${token}`
       },
+      SET_REFRESH_TOKEN(state, refreshToken) {
+        state.refreshToken = refreshToken;
+        localStorage.setItem('refreshToken', refreshToken);
+      },
       SET_USER(state, user) {
         state.user = user;
         localStorage.setItem('user', JSON.stringify(user));
@@ -20,7 +25,9 @@ export function createStore(currentToken, currentUser) {
       LOGOUT(state) {
         localStorage.removeItem('token');
         localStorage.removeItem('user');
+        localStorage.removeItem('refreshToken');
         state.token = '';
+        state.refreshToken = '';
         state.user = {};
         axios.defaults.headers.common = {};
       },
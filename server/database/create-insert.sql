@@ -1,31 +1,7 @@
-START TRANSACTION;
+-- Sample notes, photos and timeline entries. The schema is created by the migrations in
+-- src/main/resources/db/migration when the server starts, so start it once before running this.
 
-DROP TABLE IF EXISTS notes;
-
-CREATE TABLE notes (
-    id serial NOT NULL,
-    title TEXT,
-    content TEXT,
-    created_at TIMESTAMP DEFAULT NOW(),
-    CONSTRAINT PK_notes PRIMARY KEY (id)
-);
-
-CREATE TABLE photos(
-    id serial NOT NULL,
-    category VARCHAR (50) NOT NULL,
-    img_url VARCHAR NOT NULL,
-    CONSTRAINT PK_photos PRIMARY KEY (id)
-);
-
-CREATE TABLE timeline(
-    id serial NOT NULL,
-    date VARCHAR NOT NULL,
-    title VARCHAR (100) NOT NULL,
-    description VARCHAR NOT NULL,
-    img_url VARCHAR NOT NULL,
-    icon VARCHAR (50) NOT NULL,
-    CONSTRAINT PK_timeline PRIMARY KEY (id)
-);
+START TRANSACTION;
 
 INSERT INTO notes (title, content)
 VALUES ('Love at First Sight', 'The moment our eyes met, my world changed forever.');
@@ -43,4 +19,4 @@ INSERT INTO notes (title, content)
 VALUES ('Endless Love', 'Through every season of life, my love for you only grows stronger.');
 
 
-COMMIT TRANSACTION;
\ No newline at end of file
+COMMIT TRANSACTION;
@@ -0,0 +1,36 @@
+package com.usforever.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Caches used by the service layer, one per table.
+ *
+ * Each cache is bounded by entry count and expires entries a fixed time after they are written, so
+ * a write made outside this server (e.g. straight to the database) shows up within the TTL.
+ */
+@Configuration
+public class CacheConfig {
+
+    public static final String NOTES_CACHE = "notes";
+    public static final String PHOTOS_CACHE = "photos";
+    public static final String TIMELINE_CACHE = "timeline";
+    public static final String USERS_CACHE = "users";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${cache.service.maximum-size}") long maximumSize,
+                                     @Value("${cache.service.ttl-seconds}") long ttlSeconds) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(NOTES_CACHE, PHOTOS_CACHE, TIMELINE_CACHE, USERS_CACHE);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats());
+        return cacheManager;
+    }
+}
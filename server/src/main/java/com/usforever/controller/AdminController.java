@@ -0,0 +1,66 @@
+package com.usforever.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.usforever.dao.SlowQueryLog;
+import com.usforever.model.CacheStatistics;
+import com.usforever.model.SlowStatement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AdminController exposes operational information about the running server. Only users with the
+ * ADMIN role may call it.
+ */
+@PreAuthorize("hasRole('ADMIN')")
+@CrossOrigin
+@RequestMapping("/api/admin")
+@RestController
+public class AdminController {
+
+    private final CacheManager cacheManager;
+    private final SlowQueryLog slowQueryLog;
+    private final int slowQueryTop;
+
+    public AdminController(CacheManager cacheManager, SlowQueryLog slowQueryLog,
+                           @Value("${dao.slow-query.top}") int slowQueryTop){
+        this.cacheManager = cacheManager;
+        this.slowQueryLog = slowQueryLog;
+        this.slowQueryTop = slowQueryTop;
+    }
+
+    @GetMapping("/caches")
+    public List<CacheStatistics> getCacheStatistics(){
+        List<CacheStatistics> statistics = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()){
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof CaffeineCache caffeineCache){
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = caffeineCache.getNativeCache();
+                CacheStats stats = nativeCache.stats();
+                statistics.add(new CacheStatistics(name, nativeCache.estimatedSize(),
+                        stats.hitCount(), stats.missCount(), stats.evictionCount()));
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * The SQL statements with the longest single execution since the server started, slowest first,
+     * with the plan of each one's latest slow run.
+     */
+    @GetMapping("/slow-queries")
+    public List<SlowStatement> getSlowQueries(@RequestParam(required = false) Integer limit){
+        if (limit != null && limit < 0){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must not be negative");
+        }
+        return slowQueryLog.getSlowestStatements(limit != null ? limit : slowQueryTop);
+    }
+}
@@ -1,24 +1,35 @@
 package com.usforever.controller;
 
-import com.usforever.dao.UserDao;
 import com.usforever.exception.DaoException;
+import com.usforever.exception.PasswordHashingBusyException;
 import com.usforever.model.LoginDto;
 import com.usforever.model.LoginResponseDto;
+import com.usforever.model.RefreshDto;
 import com.usforever.model.RegisterUserDto;
 import com.usforever.model.User;
+import com.usforever.security.UserModelDetails;
 import com.usforever.security.jwt.TokenProvider;
+import com.usforever.service.RefreshTokenService;
+import com.usforever.service.TokenRevocationService;
+import com.usforever.service.UserService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.ErrorResponseException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.List;
+
 /**
  * AuthenticationController is a class used for handling requests to authenticate Users.
  *
- * It depends on an instance of a UserDao for retrieving and storing user data. This is provided
+ * It depends on an instance of a UserService for retrieving and storing user data. This is provided
  * through dependency injection.
  */
 
@@ -29,12 +40,17 @@ public class AuthenticationController {
 
     private final TokenProvider tokenProvider;
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
-    private UserDao userDao;
+    private UserService userService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
 
-    public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder, UserDao userDao) {
+    public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder, UserService userService,
+                                    RefreshTokenService refreshTokenService, TokenRevocationService tokenRevocationService) {
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
-        this.userDao = userDao;
+        this.userService = userService;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @RequestMapping(path = "/login", method = RequestMethod.POST)
@@ -47,8 +63,11 @@ public class AuthenticationController {
 
             if(authentication.isAuthenticated()){
                 String jwt = tokenProvider.createToken(authentication, false);
-                User user = userDao.getUserByEmail(loginDto.getEmail());
-                return new LoginResponseDto(jwt, user);
+                // The row authentication loaded rides along in the principal, so don't look it up again
+                User user = authentication.getPrincipal() instanceof UserModelDetails details
+                        ? details.getUser()
+                        : userService.getUserByEmail(loginDto.getEmail());
+                return new LoginResponseDto(jwt, refreshTokenService.issueToken(user), user);
             }
 
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED); //Status Code: 401 = The user isn't allowed to perform this action
@@ -56,6 +75,52 @@ public class AuthenticationController {
         catch (DaoException e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "DAO error - " + e.getMessage()); //Status Code: 500 = API itself has a problem and can't fulfill the request at this time
         }
+        catch (PasswordHashingBusyException e) {
+            throw tryAgainLater(e);
+        }
+    }
+
+    /**
+     * Trades a refresh token for a new access token and the next refresh token. No password is
+     * checked, so this costs a hash and an indexed lookup where a login costs a BCrypt round.
+     */
+    @RequestMapping(path = "/refresh", method = RequestMethod.POST)
+    public LoginResponseDto refresh(@Valid @RequestBody RefreshDto refreshDto) {
+        try {
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotateToken(refreshDto.getRefreshToken());
+            if (rotation == null) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token");
+            }
+            User user = rotation.user();
+            Authentication authentication = new UsernamePasswordAuthenticationToken(user.getEmail(), null,
+                    List.of(new SimpleGrantedAuthority(user.getRole())));
+            return new LoginResponseDto(tokenProvider.createToken(authentication, false), rotation.refreshToken(), user);
+        }
+        catch (DaoException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "DAO error - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Revokes the access token the request was made with, and the refresh token in the body if there
+     * is one, so neither can be used again even though they haven't expired.
+     */
+    @PreAuthorize("isAuthenticated()")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @RequestMapping(path = "/logout", method = RequestMethod.POST)
+    public void logout(Authentication authentication, @Valid @RequestBody(required = false) RefreshDto refreshDto) {
+        try {
+            TokenProvider.TokenId tokenId = TokenProvider.getTokenId(authentication);
+            if (tokenId != null) {
+                tokenRevocationService.revokeToken(tokenId.id(), tokenId.expiresAt());
+            }
+            if (refreshDto != null) {
+                refreshTokenService.revokeToken(refreshDto.getRefreshToken());
+            }
+        }
+        catch (DaoException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "DAO error - " + e.getMessage());
+        }
     }
 
     @ResponseStatus(HttpStatus.CREATED)
@@ -67,12 +132,23 @@ public class AuthenticationController {
         }
 
         try {
-            User user = userDao.createUser(new User(newUser.getName(), newUser.getDisplayName(), newUser.getEmail(), newUser.getPassword(), newUser.getRole()));
+            User user = userService.createUser(new User(newUser.getName(), newUser.getDisplayName(), newUser.getEmail(), newUser.getPassword(), newUser.getRole()));
             return user;
         }
         catch (DaoException e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "DAO error - " + e.getMessage()); //Status Code: 500 = API itself has a problem and can't fulfill the request at this time
         }
+        catch (PasswordHashingBusyException e) {
+            throw tryAgainLater(e);
+        }
     }
 
+    /**
+     * 503 with Retry-After. ResponseStatusException can't carry response headers, ErrorResponseException can.
+     */
+    private static ErrorResponseException tryAgainLater(PasswordHashingBusyException e) {
+        ErrorResponseException busy = new ErrorResponseException(HttpStatus.SERVICE_UNAVAILABLE);
+        busy.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()));
+        return busy;
+    }
 }
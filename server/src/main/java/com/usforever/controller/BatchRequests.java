@@ -0,0 +1,25 @@
+package com.usforever.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+
+/**
+ * Limits for the batch endpoints (POST .../batch, GET and DELETE ...?ids=). Each batch is a single
+ * statement, so the cap keeps one request from holding a connection or building an array parameter
+ * of unbounded size.
+ */
+final class BatchRequests {
+
+    static final int MAX_BATCH_SIZE = 500;
+
+    private BatchRequests() { }
+
+    static void checkSize(Collection<?> items) {
+        if (items == null || items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A batch must contain between 1 and " + MAX_BATCH_SIZE + " items");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.usforever.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@PreAuthorize("permitAll()")
+@CrossOrigin
+@RequestMapping("/api/changes")
+@RestController
+public class ChangeController {
+
+    private final ChangeStreams changeStreams;
+
+    public ChangeController(ChangeStreams changeStreams){
+        this.changeStreams = changeStreams;
+    }
+
+    /**
+     * Server-sent events, one "change" event per write to notes, photos or timeline on any server
+     * instance. The data is a ChangeEvent as JSON.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(){
+        return changeStreams.open();
+    }
+}
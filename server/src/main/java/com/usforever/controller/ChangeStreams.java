@@ -0,0 +1,155 @@
+package com.usforever.controller;
+
+import com.usforever.model.ChangeEvent;
+import com.usforever.service.ChangeFeed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The open /api/changes/stream connections and the events waiting to be written to them.
+ *
+ * An idle connection is an async request with nothing queued, so it holds no thread. Each event from
+ * ChangeFeed is serialized once and offered to every connection's bounded queue, and a connection
+ * with something queued gets a virtual thread that writes until the queue is empty. A client that
+ * stops reading blocks only that thread; once its queue fills up it is dropped rather than letting
+ * events pile up in memory, and it can reconnect and refetch.
+ */
+@Component
+class ChangeStreams implements DisposableBean {
+
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("").build();
+
+    private final JsonMapper jsonMapper;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("change-stream-heartbeat").daemon().factory());
+    private final Runnable unsubscribe;
+    private final Counter dropped;
+
+    ChangeStreams(ChangeFeed changeFeed, JsonMapper jsonMapper, MeterRegistry meterRegistry,
+                  @Value("${changes.stream.max-subscribers}") int maxSubscribers,
+                  @Value("${changes.stream.timeout-ms}") long timeoutMillis,
+                  @Value("${changes.stream.heartbeat-seconds}") long heartbeatSeconds,
+                  @Value("${changes.stream.buffer-size}") int bufferSize){
+        this.jsonMapper = jsonMapper;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeoutMillis;
+        this.bufferSize = bufferSize;
+        Gauge.builder("changes.stream.subscribers", subscribers, Set::size)
+                .description("Open change stream connections")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("changes.stream.dropped")
+                .description("Change stream connections closed because the client fell behind")
+                .register(meterRegistry);
+        // Keeps proxies from closing idle connections, and finds clients that went away without saying so
+        heartbeats.scheduleWithFixedDelay(() -> broadcast(HEARTBEAT), heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        this.unsubscribe = changeFeed.subscribe(this::onChange);
+    }
+
+    SseEmitter open(){
+        if (subscribers.size() >= maxSubscribers){
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many change stream connections");
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis), new ArrayBlockingQueue<>(bufferSize));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return subscriber.emitter;
+    }
+
+    @Override
+    public void destroy() {
+        unsubscribe.run();
+        heartbeats.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        writers.shutdownNow();
+    }
+
+    private void onChange(ChangeEvent event){
+        broadcast(SseEmitter.event().name("change").data(jsonMapper.writeValueAsString(event)).build());
+    }
+
+    private void broadcast(Set<ResponseBodyEmitter.DataWithMediaType> item){
+        for (Subscriber subscriber : subscribers){
+            subscriber.offer(item);
+        }
+    }
+
+    private class Subscriber {
+
+        final SseEmitter emitter;
+        final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        final AtomicBoolean writing = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue){
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> item){
+            if (!queue.offer(item)){
+                drop();
+                return;
+            }
+            if (writing.compareAndSet(false, true)){
+                writers.execute(this::write);
+            }
+        }
+
+        private void write(){
+            while (true){
+                Set<ResponseBodyEmitter.DataWithMediaType> item;
+                while ((item = queue.poll()) != null){
+                    try {
+                        emitter.send(item);
+                    } catch (IOException | IllegalStateException e){
+                        // The client is gone or the emitter already completed; onError/onCompletion remove it
+                        subscribers.remove(this);
+                        queue.clear();
+                        writing.set(false);
+                        return;
+                    }
+                }
+                writing.set(false);
+                // An item offered after our last poll but before the flag dropped would otherwise sit there
+                if (queue.isEmpty() || !writing.compareAndSet(false, true)){
+                    return;
+                }
+            }
+        }
+
+        private void drop(){
+            if (subscribers.remove(this)){
+                dropped.increment();
+                queue.clear();
+                // Completing waits for any write in progress, which for a stalled client may take a while
+                writers.execute(emitter::complete);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.usforever.controller;
+
+import com.usforever.service.ResponseSnapshots;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
+
+/**
+ * Answers a GET with 304 Not Modified when the client's If-None-Match already names the current
+ * version, so the body is only loaded and serialized when it has actually changed.
+ */
+final class ConditionalGet {
+
+    // Clients may keep the response but must revalidate it on every use
+    static final CacheControl CACHE_CONTROL = CacheControl.noCache();
+
+    private ConditionalGet() { }
+
+    static <T> ResponseEntity<T> ifNoneMatch(WebRequest request, String etag, Supplier<T> body) {
+        // checkNotModified puts the tag on a 304 itself
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL).body(body.get());
+    }
+
+    /**
+     * Like {@link #ifNoneMatch(WebRequest, String, Supplier)}, but when the snapshot supplier has a
+     * current body its stored bytes are written as they are, gzipped if the client accepts that,
+     * and the fallback body is only built when it doesn't.
+     *
+     * The gzipped and plain bodies are different representations, so the gzipped one is tagged
+     * {@link #gzipped(String)}. Either tag in If-None-Match gets a 304 while it is current, carrying
+     * the tag the client named, so a client that switches codings doesn't download the list again.
+     */
+    static ResponseEntity<?> ifNoneMatch(WebRequest request, String etag,
+                                         Supplier<ResponseSnapshots.Body> snapshot, Supplier<?> fallback) {
+        // Looked up first so the tag is that of the body that would be sent; it's a map read
+        ResponseSnapshots.Body body = snapshot.get();
+        boolean gzip = body != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String tag = gzip ? gzipped(etag) : etag;
+        String other = gzip ? etag : gzipped(etag);
+        String matched = !names(request, tag) && names(request, other) ? other : tag;
+        if (request.checkNotModified(matched)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CACHE_CONTROL)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().eTag(tag).cacheControl(CACHE_CONTROL)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (body == null) {
+            return ok.body(fallback.get());
+        }
+        ok.contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return ok.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return ok.body(body.json());
+    }
+
+    /**
+     * The tag of the gzipped body of the representation tagged etag, weak if etag is.
+     */
+    static String gzipped(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    // Weak comparison, as If-None-Match uses
+    private static boolean names(WebRequest request, String etag) {
+        String[] headers = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        if (headers == null) {
+            return false;
+        }
+        String opaque = opaque(etag);
+        for (String header : headers) {
+            for (String tag : header.split(",")) {
+                if (opaque(tag.trim()).equals(opaque)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * A weak tag for responses whose bytes vary between requests even though the content is the
+     * same, such as the gallery lists that are shuffled on every load.
+     */
+    static String weak(String etag) {
+        return "W/" + etag;
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows gzip, either by name or through "*". A q-value of 0
+     * refuses the coding, and a named gzip overrides "*" whichever comes first. A q-value that
+     * doesn't parse is taken as 1, since the header comes straight from the client.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip")) {
+                gzip = qValue(parts);
+            } else if (name.equals("*")) {
+                any = qValue(parts);
+            }
+        }
+        return (gzip >= 0 ? gzip : any) > 0;
+    }
+
+    private static double qValue(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.length() >= 2 && param.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    double q = Double.parseDouble(param.substring(2).trim());
+                    return q >= 0 && q <= 1 ? q : 1;
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,38 @@
+package com.usforever.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.function.Consumer;
+
+/**
+ * Writes a JSON array to the response one element at a time, as the source produces them.
+ *
+ * Only the generator's own buffer is held in memory, so the cost per request doesn't grow with the
+ * size of the table being listed. Elements are serialized with the application's JsonMapper, so they
+ * look exactly like the ones in a regular list response.
+ */
+@Component
+class JsonArrayStreamer {
+
+    private final JsonMapper jsonMapper;
+
+    JsonArrayStreamer(JsonMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+    }
+
+    <T> ResponseEntity<StreamingResponseBody> stream(Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = jsonMapper.createGenerator(outputStream)) {
+                generator.writeStartArray();
+                source.accept(generator::writePOJO);
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
@@ -0,0 +1,153 @@
+package com.usforever.controller;
+
+import com.usforever.service.HotMediaCache;
+import com.usforever.service.MediaStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Serves the files in {@link MediaStorage}.
+ *
+ * A file's name is the hash of its content, so the name is its ETag and the response may be cached
+ * for good. Single byte ranges are honoured (video seeking depends on them); a request for several
+ * ranges gets the whole file, which HTTP allows.
+ *
+ * Bytes don't pass through the heap: small files come from the off-heap {@link HotMediaCache}, and
+ * larger ones are handed to Tomcat's sendfile, which copies them from the page cache to the socket
+ * in the kernel. Where sendfile isn't available (over TLS, for one) FileChannel.transferTo is used.
+ */
+@PreAuthorize("permitAll()")
+@CrossOrigin
+@RequestMapping(MediaStorage.URL_PREFIX)
+@RestController
+public class MediaController {
+
+    // Request attributes of Tomcat's sendfile support (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_FOREVER = "public, max-age=31536000, immutable";
+
+    private final MediaStorage mediaStorage;
+    private final HotMediaCache hotMediaCache;
+
+    public MediaController(MediaStorage mediaStorage, HotMediaCache hotMediaCache){
+        this.mediaStorage = mediaStorage;
+        this.hotMediaCache = hotMediaCache;
+    }
+
+    @GetMapping("/{name}")
+    public void getMedia(@PathVariable String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path path;
+        long length;
+        try {
+            path = mediaStorage.resolve(name);
+            length = Files.size(path);
+        }
+        catch (IllegalArgumentException | NoSuchFileException e){
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Media not found");
+        }
+
+        String etag = "\"" + name.substring(0, name.lastIndexOf('.')) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_FOREVER);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)){
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag);
+        if (range != null){
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+                if (start >= length || start > end){
+                    throw new IllegalArgumentException("Range starts past the end of the file");
+                }
+            }
+            catch (IllegalArgumentException e){
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentType(MediaStorage.contentTypeOf(name));
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0){
+            return;
+        }
+
+        if (hotMediaCache.isCacheable(length)){
+            ByteBuffer bytes = hotMediaCache.get(name, path);
+            response.getOutputStream().write(bytes.position((int) start).limit((int) (start + count)));
+        }
+        else if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))){
+            // Tomcat sends the file itself once this method returns; end is exclusive
+            request.setAttribute(SENDFILE_FILENAME, path.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        }
+        else {
+            transfer(path, start, count, response.getOutputStream());
+        }
+    }
+
+    private static HttpRange requestedRange(HttpServletRequest request, String etag){
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null){
+            return null;
+        }
+        // If-Range names the version the client already has part of; for any other, send it all
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)){
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        }
+        catch (IllegalArgumentException e){
+            // A malformed Range header is ignored, not an error
+            return null;
+        }
+    }
+
+    private static void transfer(Path path, long start, long count, OutputStream out) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)){
+            WritableByteChannel target = Channels.newChannel(out);
+            long sent = 0;
+            while (sent < count){
+                long transferred = file.transferTo(start + sent, count - sent, target);
+                if (transferred == 0){
+                    throw new IOException(path + " is shorter than expected");
+                }
+                sent += transferred;
+            }
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.usforever.controller;
 
+import com.usforever.exception.StaleVersionException;
 import com.usforever.model.Note;
 import com.usforever.service.NoteService;
+import com.usforever.service.ResponseSnapshots;
+import com.usforever.dao.TableVersions;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
@@ -17,19 +24,45 @@ import java.util.List;
 @RestController
 public class NoteController {
     private final NoteService noteService;
+    private final TableVersions tableVersions;
+    private final JsonArrayStreamer jsonArrayStreamer;
+    private final ResponseSnapshots responseSnapshots;
 
-    public NoteController (NoteService noteService){
+    public NoteController (NoteService noteService, TableVersions tableVersions, JsonArrayStreamer jsonArrayStreamer,
+                           ResponseSnapshots responseSnapshots){
         this.noteService = noteService;
+        this.tableVersions = tableVersions;
+        this.jsonArrayStreamer = jsonArrayStreamer;
+        this.responseSnapshots = responseSnapshots;
     }
 
     @GetMapping("")
-    public List<Note> getAllNotes(){
-        return noteService.getAllNotes();
+    public ResponseEntity<?> getAllNotes(WebRequest request){
+        long version = tableVersions.current(TableVersions.Table.NOTES);
+        String etag = tableVersions.etag(TableVersions.Table.NOTES, version);
+        return ConditionalGet.ifNoneMatch(request, etag,
+                () -> responseSnapshots.get("notes", TableVersions.Table.NOTES, false, noteService::getAllNotes),
+                noteService::getAllNotes);
+    }
+
+    @GetMapping(value = "", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllNotes(){
+        return jsonArrayStreamer.stream(noteService::streamAllNotes);
+    }
+
+    @GetMapping(value = "", params = "ids")
+    public List<Note> getNotesByIds(@RequestParam List<Integer> ids){
+        BatchRequests.checkSize(ids);
+        return noteService.getNotesByIds(ids);
     }
 
     @GetMapping("/{id}")
-    public Note getNoteById(@PathVariable int id){
-        return noteService.getNoteById(id);
+    public ResponseEntity<Note> getNoteById(@PathVariable int id, WebRequest request){
+        Note note = noteService.getNoteById(id);
+        if (note == null){
+            return ResponseEntity.ok().build();
+        }
+        return RowVersions.ifNoneMatch(request, note, note.getVersion());
     }
 
     @PostMapping("")
@@ -40,12 +73,27 @@ public class NoteController {
     }
 
     @PutMapping("/{id}")
-    public Note updateNote(@PathVariable int id, @Valid @RequestBody Note updatedNote){
+    public ResponseEntity<Note> updateNote(@PathVariable int id, @Valid @RequestBody Note updatedNote,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
         updatedNote.setId(id);
+        // Only If-Match makes the update conditional, whatever version the body carries
+        updatedNote.setVersion(RowVersions.expectedVersion(ifMatch));
 
-        Note toUpdate = noteService.updateNote(updatedNote);
+        Note toUpdate;
+        try {
+            toUpdate = noteService.updateNote(updatedNote);
+        }
+        catch (StaleVersionException e){
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Note was changed by someone else");
+        }
 
-        return toUpdate;
+        return ResponseEntity.ok().eTag(RowVersions.etag(toUpdate.getVersion())).body(toUpdate);
+    }
+
+    @PostMapping("/batch")
+    public List<Note> createNotes(@RequestBody List<@Valid Note> newNotes){
+        BatchRequests.checkSize(newNotes);
+        return noteService.createNotes(newNotes);
     }
 
     @DeleteMapping("/{id}")
@@ -56,4 +104,13 @@ public class NoteController {
         }
     }
 
+    @DeleteMapping(value = "", params = "ids")
+    public void deleteNotes(@RequestParam List<Integer> ids){
+        BatchRequests.checkSize(ids);
+        int rowsDeleted = noteService.deleteNotes(ids);
+        if (rowsDeleted == 0){
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Notes not found");
+        }
+    }
+
 }
@@ -1,15 +1,29 @@
 package com.usforever.controller;
 
 
+import com.usforever.model.CategoryCount;
 import com.usforever.model.Photo;
+import com.usforever.model.PhotoPage;
+import com.usforever.service.MediaStorage;
 import com.usforever.service.PhotoService;
+import com.usforever.service.ResponseSnapshots;
+import com.usforever.dao.TableVersions;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 @PreAuthorize("permitAll()")
 @CrossOrigin
@@ -17,20 +31,68 @@ import java.util.List;
 @RestController
 public class PhotoController {
 
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+    private static final int MAX_CATEGORY_LENGTH = 50;
+
     private final PhotoService photoService;
+    private final TableVersions tableVersions;
+    private final JsonArrayStreamer jsonArrayStreamer;
+    private final ResponseSnapshots responseSnapshots;
 
-    public PhotoController (PhotoService photoService){
+    public PhotoController (PhotoService photoService, TableVersions tableVersions, JsonArrayStreamer jsonArrayStreamer,
+                            ResponseSnapshots responseSnapshots){
         this.photoService = photoService;
+        this.tableVersions = tableVersions;
+        this.jsonArrayStreamer = jsonArrayStreamer;
+        this.responseSnapshots = responseSnapshots;
     }
 
     @GetMapping("")
-    public List<Photo> getAllPhotos(){
-        return photoService.getAllPhotos();
+    public ResponseEntity<?> getAllPhotos(WebRequest request){
+        return ConditionalGet.ifNoneMatch(request, photosEtag(),
+                () -> responseSnapshots.get("photos", TableVersions.Table.PHOTOS, true, photoService::getAllPhotos),
+                photoService::getAllPhotos);
+    }
+
+    @GetMapping(value = "", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllPhotos(){
+        return jsonArrayStreamer.stream(photoService::streamAllPhotos);
+    }
+
+    @GetMapping(value = "", params = "seed")
+    public PhotoPage getPhotoFeed(@RequestParam String seed,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(defaultValue = "30") int limit,
+                                  @RequestParam(required = false) String category){
+        if (limit < 1 || limit > MAX_FEED_PAGE_SIZE){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_FEED_PAGE_SIZE);
+        }
+        try {
+            return photoService.getPhotoFeed(seed, cursor, limit, category);
+        }
+        catch (IllegalArgumentException e){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    @GetMapping("/categories")
+    public List<CategoryCount> getCategoryCounts(){
+        return photoService.getCategoryCounts();
     }
 
     @GetMapping("/category/{category}")
-    public List<Photo> getAllPhotosFromCategory(@PathVariable String category){
-        return photoService.getAllPhotosByCategory(category);
+    public ResponseEntity<?> getAllPhotosFromCategory(@PathVariable String category, WebRequest request){
+        // The category is matched case-insensitively, so any casing shares one snapshot
+        String key = "photos:category:" + category.toLowerCase(Locale.ROOT);
+        return ConditionalGet.ifNoneMatch(request, photosEtag(),
+                () -> responseSnapshots.get(key, TableVersions.Table.PHOTOS, true, () -> photoService.getAllPhotosByCategory(category)),
+                () -> photoService.getAllPhotosByCategory(category));
+    }
+
+    @GetMapping(value = "", params = "ids")
+    public List<Photo> getPhotosByIds(@RequestParam List<Integer> ids){
+        BatchRequests.checkSize(ids);
+        return photoService.getPhotosByIds(ids);
     }
 
     @GetMapping("/{id}")
@@ -46,6 +108,35 @@ public class PhotoController {
         return photo;
     }
 
+    /**
+     * Uploads a photo or video straight to this server. The part is spooled to disk by the servlet
+     * container (see spring.servlet.multipart.*) and copied from there into media storage.
+     */
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Photo uploadPhoto(@RequestParam String category, @RequestParam MultipartFile file){
+        if (category.isBlank() || category.length() > MAX_CATEGORY_LENGTH){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "category must be 1 to " + MAX_CATEGORY_LENGTH + " characters");
+        }
+        if (!MediaStorage.isSupported(file.getContentType())){
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported file type");
+        }
+        try (InputStream content = file.getInputStream()){
+            return photoService.uploadPhoto(category, file.getContentType(), content);
+        }
+        catch (RejectedExecutionException e){
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many uploads in progress, try again shortly");
+        }
+        catch (IOException e){
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not store upload", e);
+        }
+    }
+
+    @PostMapping("/batch")
+    public List<Photo> createPhotos(@RequestBody List<@Valid Photo> newPhotos){
+        BatchRequests.checkSize(newPhotos);
+        return photoService.createPhotos(newPhotos);
+    }
+
     @DeleteMapping("/{id}")
     public void deletePhoto(@PathVariable int id){
         int rowsDeleted = photoService.deletePhoto(id);
@@ -55,5 +146,20 @@ public class PhotoController {
         }
     }
 
+    @DeleteMapping(value = "", params = "ids")
+    public void deletePhotos(@RequestParam List<Integer> ids){
+        BatchRequests.checkSize(ids);
+        int rowsDeleted = photoService.deletePhotos(ids);
+        if (rowsDeleted == 0){
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Photos not found");
+        }
+    }
+
+    private String photosEtag(){
+        // Weak, because every response shuffles the same photos into a new order
+        long version = tableVersions.current(TableVersions.Table.PHOTOS);
+        return ConditionalGet.weak(tableVersions.etag(TableVersions.Table.PHOTOS, version));
+    }
+
 
 }
@@ -0,0 +1,49 @@
+package com.usforever.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ETags for single versioned rows, and reading them back from If-Match.
+ *
+ * GET /{id} tags the row with its version ("v3"); a client that sends that tag back in If-Match on
+ * PUT only overwrites the row if nobody else has updated it since, and gets 412 otherwise.
+ */
+final class RowVersions {
+
+    private static final Pattern VERSION_TAG = Pattern.compile("\"v(\\d+)\"");
+    private static final String ANY = "*";
+
+    private RowVersions() { }
+
+    static String etag(int version) {
+        return "\"v" + version + "\"";
+    }
+
+    static <T> ResponseEntity<T> ifNoneMatch(WebRequest request, T row, int version) {
+        return ConditionalGet.ifNoneMatch(request, etag(version), () -> row);
+    }
+
+    /**
+     * Returns the version an If-Match header asks for, or 0 when there is no header or it is "*" and
+     * any version may be replaced.
+     */
+    static int expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals(ANY)) {
+            return 0;
+        }
+        // If-Match uses strong comparison, so a weak W/"v3" never matches
+        for (String tag : ifMatch.split(",")) {
+            Matcher matcher = VERSION_TAG.matcher(tag.trim());
+            if (matcher.matches() && matcher.group(1).length() < 10) {
+                return Integer.parseInt(matcher.group(1));
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not name a current version");
+    }
+}
@@ -0,0 +1,45 @@
+package com.usforever.controller;
+
+import com.usforever.model.SearchPage;
+import com.usforever.service.SearchService;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+@PreAuthorize("permitAll()")
+@CrossOrigin
+@RequestMapping("/api/search")
+@RestController
+public class SearchController {
+
+    private static final int MAX_PAGE_SIZE = 50;
+
+    private final SearchService searchService;
+
+    public SearchController(SearchService searchService){
+        this.searchService = searchService;
+    }
+
+    /**
+     * Searches note titles and contents and timeline titles and descriptions together. q takes
+     * web-search syntax: quoted phrases, "or", and -excluded words.
+     */
+    @GetMapping("")
+    public SearchPage search(@RequestParam String q,
+                             @RequestParam(required = false) String cursor,
+                             @RequestParam(defaultValue = "20") int limit){
+        if (q.isBlank()){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must not be blank");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        try {
+            return searchService.search(q, cursor, limit);
+        }
+        catch (IllegalArgumentException e){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
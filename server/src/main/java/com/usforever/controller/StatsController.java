@@ -0,0 +1,24 @@
+package com.usforever.controller;
+
+import com.usforever.model.Stats;
+import com.usforever.service.StatsService;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@PreAuthorize("permitAll()")
+@CrossOrigin
+@RequestMapping("/api/stats")
+@RestController
+public class StatsController {
+
+    private final StatsService statsService;
+
+    public StatsController(StatsService statsService){
+        this.statsService = statsService;
+    }
+
+    @GetMapping("")
+    public Stats getStats(){
+        return statsService.getStats();
+    }
+}
@@ -0,0 +1,34 @@
+package com.usforever.controller;
+
+import com.usforever.model.SyncChanges;
+import com.usforever.service.SyncService;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+@PreAuthorize("permitAll()")
+@CrossOrigin
+@RequestMapping("/api/sync")
+@RestController
+public class SyncController {
+
+    private final SyncService syncService;
+
+    public SyncController(SyncService syncService){
+        this.syncService = syncService;
+    }
+
+    /**
+     * Everything changed since the token from the previous sync, or every row when there is none.
+     */
+    @GetMapping("")
+    public SyncChanges sync(@RequestParam(required = false) String since){
+        try {
+            return syncService.sync(since);
+        }
+        catch (IllegalArgumentException e){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid since token");
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.usforever.controller;
 
 
+import com.usforever.exception.StaleVersionException;
 import com.usforever.model.Timeline;
+import com.usforever.service.ResponseSnapshots;
 import com.usforever.service.TimelineService;
+import com.usforever.dao.TableVersions;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
@@ -18,19 +25,45 @@ import java.util.List;
 public class TimelineController {
 
     private final TimelineService timelineService;
+    private final TableVersions tableVersions;
+    private final JsonArrayStreamer jsonArrayStreamer;
+    private final ResponseSnapshots responseSnapshots;
 
-    public TimelineController(TimelineService timelineService){
+    public TimelineController(TimelineService timelineService, TableVersions tableVersions, JsonArrayStreamer jsonArrayStreamer,
+                              ResponseSnapshots responseSnapshots){
         this.timelineService = timelineService;
+        this.tableVersions = tableVersions;
+        this.jsonArrayStreamer = jsonArrayStreamer;
+        this.responseSnapshots = responseSnapshots;
     }
 
     @GetMapping("")
-    public List<Timeline> getAllTimeline(){
-        return timelineService.getAllTimeline();
+    public ResponseEntity<?> getAllTimeline(WebRequest request){
+        long version = tableVersions.current(TableVersions.Table.TIMELINE);
+        String etag = tableVersions.etag(TableVersions.Table.TIMELINE, version);
+        return ConditionalGet.ifNoneMatch(request, etag,
+                () -> responseSnapshots.get("timeline", TableVersions.Table.TIMELINE, false, timelineService::getAllTimeline),
+                timelineService::getAllTimeline);
+    }
+
+    @GetMapping(value = "", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllTimeline(){
+        return jsonArrayStreamer.stream(timelineService::streamAllTimeline);
+    }
+
+    @GetMapping(value = "", params = "ids")
+    public List<Timeline> getTimelineByIds(@RequestParam List<Integer> ids){
+        BatchRequests.checkSize(ids);
+        return timelineService.getTimelineByIds(ids);
     }
 
     @GetMapping("/{id}")
-    public Timeline getTimelineById(@PathVariable int id){
-        return timelineService.getTimelineById(id);
+    public ResponseEntity<Timeline> getTimelineById(@PathVariable int id, WebRequest request){
+        Timeline timeline = timelineService.getTimelineById(id);
+        if (timeline == null){
+            return ResponseEntity.ok().build();
+        }
+        return RowVersions.ifNoneMatch(request, timeline, timeline.getVersion());
     }
 
     @PostMapping("")
@@ -41,12 +74,27 @@ public class TimelineController {
     }
 
     @PutMapping("/{id}")
-    public Timeline updateTimeline(@PathVariable int id, @Valid @RequestBody Timeline updatedTimeline){
+    public ResponseEntity<Timeline> updateTimeline(@PathVariable int id, @Valid @RequestBody Timeline updatedTimeline,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
         updatedTimeline.setId(id);
+        // Only If-Match makes the update conditional, whatever version the body carries
+        updatedTimeline.setVersion(RowVersions.expectedVersion(ifMatch));
 
-        Timeline toUpdate = timelineService.updateTimeline(updatedTimeline);
+        Timeline toUpdate;
+        try {
+            toUpdate = timelineService.updateTimeline(updatedTimeline);
+        }
+        catch (StaleVersionException e){
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Timeline entry was changed by someone else");
+        }
 
-        return toUpdate;
+        return ResponseEntity.ok().eTag(RowVersions.etag(toUpdate.getVersion())).body(toUpdate);
+    }
+
+    @PostMapping("/batch")
+    public List<Timeline> createTimelines(@RequestBody List<@Valid Timeline> newTimelines){
+        BatchRequests.checkSize(newTimelines);
+        return timelineService.createTimelines(newTimelines);
     }
 
     @DeleteMapping("/{id}")
@@ -57,5 +105,14 @@ public class TimelineController {
         }
     }
 
+    @DeleteMapping(value = "", params = "ids")
+    public void deleteTimelines(@RequestParam List<Integer> ids){
+        BatchRequests.checkSize(ids);
+        int rowsDeleted = timelineService.deleteTimelines(ids);
+        if (rowsDeleted == 0){
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Timeline entries not found");
+        }
+    }
+
 
 }
@@ -0,0 +1,11 @@
+package com.usforever.dao;
+
+public interface ChangeDao {
+
+    /**
+     * The Postgres notification channel that change events travel on between server instances.
+     */
+    String CHANNEL = "usforever_changes";
+
+    void notifyChange(String payload);
+}
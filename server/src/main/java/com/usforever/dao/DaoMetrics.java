@@ -0,0 +1,129 @@
+package com.usforever.dao;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Times every method of every Jdbc*Dao and records how many rows it returned or changed.
+ *
+ * Each DAO bean is wrapped in a proxy of its *Dao interface, so the meters are tagged with the DAO
+ * and method name ("dao.query" with dao=NoteDao, method=getAllNotes) without touching the queries
+ * themselves. The time includes waiting for the bulkhead and for a pooled connection; the
+ * "dao.bulkhead.wait" and "hikaricp.connections.acquire" timers tell those apart.
+ */
+@Component
+public class DaoMetrics implements BeanPostProcessor {
+
+    // Resolved on first use: a BeanPostProcessor that pulls in the registry eagerly would initialize it too early
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public DaoMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof JdbcRepository)) {
+            return bean;
+        }
+        // The bean may already be a proxy (e.g. for exception translation), so look at the class behind it
+        Class<?> daoInterface = Arrays.stream(ClassUtils.getAllInterfacesForClass(AopUtils.getTargetClass(bean)))
+                .filter(type -> type.getSimpleName().endsWith("Dao"))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(beanName + " does not implement a *Dao interface"));
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setInterfaces(daoInterface);
+        proxyFactory.addAdvice(new Timing(daoInterface.getSimpleName()));
+        return proxyFactory.getProxy();
+    }
+
+    private class Timing implements MethodInterceptor {
+
+        private final String dao;
+        private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+        private final Map<String, DistributionSummary> rowCounts = new ConcurrentHashMap<>();
+
+        Timing(String dao) {
+            this.dao = dao;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            LongAdder streamedRows = countStreamedRows(invocation.getArguments());
+
+            long start = System.nanoTime();
+            String outcome = "error";
+            try {
+                Object result = invocation.proceed();
+                outcome = "success";
+                rowCount(method).record(streamedRows != null ? streamedRows.sum() : rowsIn(result));
+                return result;
+            } finally {
+                timer(method, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private Timer timer(String method, String outcome) {
+            return timers.computeIfAbsent(method + ':' + outcome, key -> Timer.builder("dao.query")
+                    .description("Time spent in a DAO method, including waiting for a connection")
+                    .tags("dao", dao, "method", method, "outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry.getObject()));
+        }
+
+        private DistributionSummary rowCount(String method) {
+            return rowCounts.computeIfAbsent(method, key -> DistributionSummary.builder("dao.rows")
+                    .description("Rows returned or changed by a DAO method")
+                    .tags("dao", dao, "method", method)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry.getObject()));
+        }
+    }
+
+    /**
+     * The stream* methods hand rows to a consumer instead of returning them; count them on the way through.
+     */
+    @SuppressWarnings("unchecked")
+    private static LongAdder countStreamedRows(Object[] arguments) {
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] instanceof Consumer<?> consumer) {
+                LongAdder rows = new LongAdder();
+                Consumer<Object> target = (Consumer<Object>) consumer;
+                arguments[i] = (Consumer<Object>) row -> {
+                    rows.increment();
+                    target.accept(row);
+                };
+                return rows;
+            }
+        }
+        return null;
+    }
+
+    private static long rowsIn(Object result) {
+        if (result instanceof List<?> rows) {
+            return rows.size();
+        }
+        if (result instanceof Integer rowsAffected) {
+            return rowsAffected;
+        }
+        return result != null ? 1 : 0;
+    }
+}
@@ -0,0 +1,109 @@
+package com.usforever.dao;
+
+import com.usforever.exception.DaoException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Admits at most as many concurrent DAO calls as the connection pool can serve without waiting.
+ *
+ * On platform threads Tomcat's pool already caps how many requests can be waiting on the database.
+ * On virtual threads there is no such cap, so a burst of gallery requests would all queue inside
+ * Hikari for a connection. The fair semaphore parks them here instead, in arrival order, and a caller
+ * that can't get in within the timeout fails with a DaoException rather than waiting indefinitely.
+ *
+ * Some connections are taken outside the DAOs: by the slow-query EXPLAIN thread, the actuator health
+ * check and, at startup, Flyway. The bulkhead has that many fewer permits than the pool has
+ * connections, so an admitted call never queues in Hikari behind them. A ?stream=true list keeps its
+ * permit (and its connection, which holds the cursor) until the last row is written to the client, so
+ * a slow reader holds it for as long as it reads. Streams also need one of a few stream permits first,
+ * which leaves the rest of the permits to ordinary calls however many slow readers there are.
+ */
+@Component
+public class JdbcBulkhead {
+
+    private final Semaphore permits;
+    private final Semaphore streamPermits;
+    private final long acquireTimeoutNanos;
+    private final Timer waitTimer;
+
+    public JdbcBulkhead(@Value("${spring.datasource.hikari.maximum-pool-size}") int poolSize,
+                        @Value("${dao.bulkhead.reserved-connections}") int reservedConnections,
+                        @Value("${dao.bulkhead.stream-permits}") int streamPermits,
+                        @Value("${dao.bulkhead.acquire-timeout-ms}") long acquireTimeoutMillis,
+                        MeterRegistry meterRegistry) {
+        int available = poolSize - reservedConnections;
+        if (available < 1 || streamPermits < 1 || streamPermits > available) {
+            throw new IllegalArgumentException("dao.bulkhead: " + poolSize + " connections less " + reservedConnections
+                    + " reserved must leave at least one permit, and between 1 and that many stream permits");
+        }
+        this.permits = new Semaphore(available, true);
+        this.streamPermits = new Semaphore(streamPermits, true);
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        this.waitTimer = Timer.builder("dao.bulkhead.wait")
+                .description("Time a DAO call waited to be admitted")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("dao.bulkhead.available", this.permits, Semaphore::availablePermits)
+                .description("DAO calls that could start right now")
+                .register(meterRegistry);
+        Gauge.builder("dao.bulkhead.queued", this.permits, Semaphore::getQueueLength)
+                .description("DAO calls waiting to be admitted")
+                .register(meterRegistry);
+        Gauge.builder("dao.bulkhead.streams.available", this.streamPermits, Semaphore::availablePermits)
+                .description("Streamed lists that could start right now")
+                .register(meterRegistry);
+    }
+
+    <T> T call(Supplier<T> operation) {
+        long start = System.nanoTime();
+        acquire(permits, start);
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        try {
+            return operation.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Like {@link #call(Supplier)}, for an operation that streams rows to the client, so it takes a
+     * stream permit as well. The timeout covers waiting for both.
+     */
+    <T> T stream(Supplier<T> operation) {
+        long start = System.nanoTime();
+        acquire(streamPermits, start);
+        try {
+            acquire(permits, start);
+        } catch (RuntimeException e) {
+            streamPermits.release();
+            throw e;
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        try {
+            return operation.get();
+        } finally {
+            permits.release();
+            streamPermits.release();
+        }
+    }
+
+    private void acquire(Semaphore semaphore, long start) {
+        try {
+            if (!semaphore.tryAcquire(acquireTimeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS)) {
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw new DaoException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DaoException("Interrupted waiting for a database connection", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.usforever.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+
+@Repository
+public class JdbcChangeDao extends JdbcRepository implements ChangeDao{
+
+    // Outside a transaction the notification is delivered as soon as the statement completes
+    private static final String NOTIFY = "SELECT pg_notify(?, ?);";
+
+    public JdbcChangeDao(DataSource dataSource, JdbcBulkhead bulkhead,
+                         @Value("${dao.stream-fetch-size}") int streamFetchSize){
+        super(dataSource, bulkhead, streamFetchSize);
+    }
+
+    @Override
+    public void notifyChange(String payload) {
+        queryForList(NOTIFY, (rs, rowNum) -> null, CHANNEL, payload);
+    }
+}
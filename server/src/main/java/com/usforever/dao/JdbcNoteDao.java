@@ -1,119 +1,121 @@
 package com.usforever.dao;
 
 import com.usforever.exception.DaoException;
+import com.usforever.exception.StaleVersionException;
 import com.usforever.model.Note;
-import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.jdbc.CannotGetJdbcConnectionException;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
-public class JdbcNoteDao implements NoteDao {
-    private final JdbcTemplate jdbcTemplate;
-
-    public JdbcNoteDao (DataSource dataSource){
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
-    }
-
-    private Note mapRowToNote(SqlRowSet rs){
-        Note note = new Note();
-        note.setId(rs.getInt("id"));
-        note.setTitle(rs.getString("title"));
-        note.setContent(rs.getString("content"));
-        if (rs.getTimestamp("created_at") != null){
-            note.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-        }
-        return note;
+public class JdbcNoteDao extends JdbcRepository implements NoteDao {
+
+    private static final String SELECT_NOTES = "SELECT " + RowMappers.NOTE_COLUMNS + " FROM notes " +
+            "WHERE deleted_at IS NULL ";
+
+    // Matches IX_notes_created_at, so the list is read in index order instead of sorted
+    static final String GET_ALL_NOTES = SELECT_NOTES + "ORDER BY created_at DESC, id;";
+    private static final String GET_NOTE_BY_ID = SELECT_NOTES + "AND id = ?;";
+    private static final String GET_NOTES_BY_IDS = SELECT_NOTES + "AND id = ANY(?);";
+    private static final String CREATE_NOTE = "INSERT INTO notes (title, content) " +
+            "VALUES (?, ?) RETURNING " + RowMappers.NOTE_COLUMNS + ";";
+    // WITH ORDINALITY ... ORDER BY keeps the serial ids in the order the notes were sent
+    private static final String CREATE_NOTES = "INSERT INTO notes (title, content) " +
+            "SELECT title, content FROM unnest(?, ?) WITH ORDINALITY AS batch (title, content, ord) " +
+            "ORDER BY ord RETURNING " + RowMappers.NOTE_COLUMNS + ";";
+    private static final String UPDATE_NOTE = "UPDATE notes " +
+            "SET title = ?, content = ?, version = version + 1, " + TOUCH + " " +
+            "WHERE id = ? AND deleted_at IS NULL RETURNING " + RowMappers.NOTE_COLUMNS + ";";
+    private static final String UPDATE_NOTE_IF_VERSION = "UPDATE notes " +
+            "SET title = ?, content = ?, version = version + 1, " + TOUCH + " " +
+            "WHERE id = ? AND version = ? AND deleted_at IS NULL RETURNING " + RowMappers.NOTE_COLUMNS + ";";
+    // Deleted rows stay behind as tombstones for /api/sync
+    private static final String DELETE_NOTE = "UPDATE notes SET " + SOFT_DELETE +
+            " WHERE id = ? AND deleted_at IS NULL;";
+    private static final String DELETE_NOTES = "UPDATE notes SET " + SOFT_DELETE +
+            " WHERE id = ANY(?) AND deleted_at IS NULL;";
+
+    private final TableVersions tableVersions;
+
+    public JdbcNoteDao (DataSource dataSource, JdbcBulkhead bulkhead, TableVersions tableVersions,
+                        @Value("${dao.stream-fetch-size}") int streamFetchSize){
+        super(dataSource, bulkhead, streamFetchSize);
+        this.tableVersions = tableVersions;
     }
 
     @Override
     public List<Note> getAllNotes() {
-        List<Note> notes = new ArrayList<>();
-
-        String sql = "SELECT * FROM notes ORDER BY created_at DESC;";
+        return queryForList(GET_ALL_NOTES, RowMappers.NOTE);
+    }
 
-        try{
-            SqlRowSet result = jdbcTemplate.queryForRowSet(sql);
-            while(result.next()){
-                notes.add(mapRowToNote(result));
-            }
-        }catch (CannotGetJdbcConnectionException e){
-            throw new DaoException("Cannot connect to database", e);
-        }
-        return notes;
+    @Override
+    public void streamAllNotes(Consumer<Note> consumer) {
+        stream(GET_ALL_NOTES, RowMappers.NOTE, consumer);
     }
 
     @Override
     public Note getNoteById(int id) {
-        Note note = null;
-
-        String sql = "SELECT * FROM notes WHERE id = ?;";
+        return queryForFirst(GET_NOTE_BY_ID, RowMappers.NOTE, id);
+    }
 
-        try{
-            SqlRowSet result = jdbcTemplate.queryForRowSet(sql, id);
-            if (result.next()){
-                note = mapRowToNote(result);
-            }
-        }catch (CannotGetJdbcConnectionException e){
-            throw new DaoException("Cannot connect to database", e);
-        }
-        return note;
+    @Override
+    public List<Note> getNotesByIds(Collection<Integer> ids) {
+        return queryForList(GET_NOTES_BY_IDS, RowMappers.NOTE, intArray(ids));
     }
 
     @Override
     public Note createNote(Note newNote) {
-        Note note = null;
-        int newId;
-
-        String sql = "INSERT INTO notes (title, content) " +
-                "VALUES (?, ?) RETURNING id;";
-
-        try{
-            newId = jdbcTemplate.queryForObject(sql, int.class, newNote.getTitle(), newNote.getContent());
-            note = getNoteById(newId);
-        }catch (CannotGetJdbcConnectionException e){
-            throw new DaoException("Cannot connect to database", e);
-        }
+        Note note = queryForFirst(CREATE_NOTE, RowMappers.NOTE, newNote.getTitle(), newNote.getContent());
+        tableVersions.bump(TableVersions.Table.NOTES);
         return note;
     }
 
     @Override
-    public Note updateNote(Note updatedNote) {
-        Note note = null;
-
-        String sql = "UPDATE notes " +
-                "SET title = ?, content = ? " +
-                "WHERE id = ?;";
+    public List<Note> createNotes(List<Note> newNotes) {
+        List<Note> notes = queryForList(CREATE_NOTES, RowMappers.NOTE,
+                textArray(newNotes, Note::getTitle), textArray(newNotes, Note::getContent));
+        tableVersions.bump(TableVersions.Table.NOTES);
+        return notes;
+    }
 
-        try{
-            int rowsAffected = jdbcTemplate.update(sql, updatedNote.getTitle(), updatedNote.getContent(), updatedNote.getId());
-            if (rowsAffected == 0){
-                throw new DaoException("Zero rows affected, expected at least one");
+    @Override
+    public Note updateNote(Note updatedNote) {
+        // The version check is part of the UPDATE itself, so no row is read or locked beforehand
+        Note note = updatedNote.getVersion() > 0
+                ? queryForFirst(UPDATE_NOTE_IF_VERSION, RowMappers.NOTE, updatedNote.getTitle(),
+                        updatedNote.getContent(), updatedNote.getId(), updatedNote.getVersion())
+                : queryForFirst(UPDATE_NOTE, RowMappers.NOTE,
+                        updatedNote.getTitle(), updatedNote.getContent(), updatedNote.getId());
+        if (note == null){
+            Note current = updatedNote.getVersion() > 0 ? getNoteById(updatedNote.getId()) : null;
+            if (current != null){
+                throw new StaleVersionException(current.getVersion());
             }
-            note = getNoteById(updatedNote.getId());
-        }catch (CannotGetJdbcConnectionException e) {
-            throw new DaoException("Unable to connect to server or database", e);
-        } catch (DataIntegrityViolationException e) {
-            throw new DaoException("Data integrity violation", e);
+            throw new DaoException("Zero rows affected, expected at least one");
         }
+        tableVersions.bump(TableVersions.Table.NOTES);
         return note;
     }
 
     @Override
     public int deleteNote(int id) {
-        String sql = "DELETE FROM notes WHERE id = ?;";
-
-        try{
-            return jdbcTemplate.update(sql, id);
-        }catch (CannotGetJdbcConnectionException e){
-            throw new DaoException("Cannot connect to database", e);
-        }catch (DataIntegrityViolationException e){
-            throw new DaoException("Data integrity violation", e);
+        int rowsDeleted = update(DELETE_NOTE, id);
+        if (rowsDeleted > 0){
+            tableVersions.bump(TableVersions.Table.NOTES);
+        }
+        return rowsDeleted;
+    }
+
+    @Override
+    public int deleteNotes(Collection<Integer> ids) {
+        int rowsDeleted = update(DELETE_NOTES, intArray(ids));
+        if (rowsDeleted > 0){
+            tableVersions.bump(TableVersions.Table.NOTES);
         }
+        return rowsDeleted;
     }
 }
@@ -1,116 +1,121 @@
 package com.usforever.dao;
 
-import com.usforever.exception.DaoException;
 import com.usforever.model.Photo;
-import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.jdbc.CannotGetJdbcConnectionException;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
-public class JdbcPhotoDao implements PhotoDao{
-
-    private final JdbcTemplate jdbcTemplate;
-
-    public JdbcPhotoDao(DataSource dataSource){
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
+public class JdbcPhotoDao extends JdbcRepository implements PhotoDao{
+
+    private static final String SELECT_PHOTOS = "SELECT " + RowMappers.PHOTO_COLUMNS + " FROM photos " +
+            "WHERE deleted_at IS NULL ";
+
+    private static final String GET_ALL_PHOTOS = SELECT_PHOTOS + "ORDER BY RANDOM();";
+    private static final String STREAM_ALL_PHOTOS = SELECT_PHOTOS + "ORDER BY shuffle_key, id;";
+    // category_key is lower(category), indexed with the shuffle order
+    static final String GET_PHOTOS_BY_CATEGORY = SELECT_PHOTOS + "AND category_key = lower(?) ORDER BY RANDOM();";
+    private static final String GET_PHOTOS_AFTER_SHUFFLE_KEY = SELECT_PHOTOS +
+            "AND (shuffle_key, id) > (?, ?) AND shuffle_key < ? " +
+            "ORDER BY shuffle_key, id LIMIT ?;";
+    static final String GET_CATEGORY_PHOTOS_AFTER_SHUFFLE_KEY = SELECT_PHOTOS +
+            "AND (shuffle_key, id) > (?, ?) AND shuffle_key < ? AND category_key = lower(?) " +
+            "ORDER BY shuffle_key, id LIMIT ?;";
+    private static final String GET_PHOTO_BY_ID = SELECT_PHOTOS + "AND id = ?;";
+    private static final String GET_PHOTOS_BY_IDS = SELECT_PHOTOS + "AND id = ANY(?);";
+    private static final String CREATE_PHOTO = "INSERT INTO photos (category, img_url, medium_url, thumbnail_url, placeholder) " +
+            "VALUES (?, ?, ?, ?, ?) RETURNING " + RowMappers.PHOTO_COLUMNS + ";";
+    // WITH ORDINALITY ... ORDER BY keeps the serial ids in the order the photos were sent
+    private static final String CREATE_PHOTOS = "INSERT INTO photos (category, img_url, medium_url, thumbnail_url, placeholder) " +
+            "SELECT category, img_url, medium_url, thumbnail_url, placeholder FROM unnest(?, ?, ?, ?, ?) " +
+            "WITH ORDINALITY AS batch (category, img_url, medium_url, thumbnail_url, placeholder, ord) " +
+            "ORDER BY ord RETURNING " + RowMappers.PHOTO_COLUMNS + ";";
+    // Deleted rows stay behind as tombstones for /api/sync
+    private static final String DELETE_PHOTO = "UPDATE photos SET " + SOFT_DELETE +
+            " WHERE id = ? AND deleted_at IS NULL;";
+    private static final String DELETE_PHOTOS = "UPDATE photos SET " + SOFT_DELETE +
+            " WHERE id = ANY(?) AND deleted_at IS NULL;";
+
+    private final TableVersions tableVersions;
+
+    public JdbcPhotoDao(DataSource dataSource, JdbcBulkhead bulkhead, TableVersions tableVersions,
+                        @Value("${dao.stream-fetch-size}") int streamFetchSize){
+        super(dataSource, bulkhead, streamFetchSize);
+        this.tableVersions = tableVersions;
     }
 
 
 
     @Override
     public List<Photo> getAllPhotos() {
-        List<Photo> photos = new ArrayList<>();
-
-        String sql = "SELECT * FROM photos ORDER BY RANDOM();";
+        return queryForList(GET_ALL_PHOTOS, RowMappers.PHOTO);
+    }
 
-        try{
-            SqlRowSet result = jdbcTemplate.queryForRowSet(sql);
-            while(result.next()){
-                photos.add(mapRowToPhoto(result));
-            }
-        }catch (CannotGetJdbcConnectionException e ){
-            throw new DaoException("Cannot connect to database", e);
-        }
-        return photos;
+    @Override
+    public void streamAllPhotos(Consumer<Photo> consumer) {
+        stream(STREAM_ALL_PHOTOS, RowMappers.PHOTO, consumer);
     }
 
     @Override
     public List<Photo> getAllPhotosByCategory(String category) {
-        List<Photo> photos = new ArrayList<>();
-
-        String sql = "SELECT * FROM photos WHERE category ILIKE ? ORDER BY RANDOM();";
+        return queryForList(GET_PHOTOS_BY_CATEGORY, RowMappers.PHOTO, category);
+    }
 
-        try{
-            SqlRowSet result = jdbcTemplate.queryForRowSet(sql, category);
-            while(result.next()){
-                photos.add(mapRowToPhoto(result));
-            }
-        }catch (CannotGetJdbcConnectionException e ){
-            throw new DaoException("Cannot connect to database", e);
+    @Override
+    public List<Photo> getPhotosAfterShuffleKey(int afterKey, int afterId, long upperKey, String category, int limit) {
+        if (category != null){
+            return queryForList(GET_CATEGORY_PHOTOS_AFTER_SHUFFLE_KEY, RowMappers.PHOTO, afterKey, afterId, upperKey, category, limit);
         }
-        return photos;
+        return queryForList(GET_PHOTOS_AFTER_SHUFFLE_KEY, RowMappers.PHOTO, afterKey, afterId, upperKey, limit);
     }
 
     @Override
     public Photo getPhotoById(int id) {
-        Photo photo = null;
-
-        String sql = "SELECT * FROM photos WHERE id = ?;";
+        return queryForFirst(GET_PHOTO_BY_ID, RowMappers.PHOTO, id);
+    }
 
-        try{
-            SqlRowSet result = jdbcTemplate.queryForRowSet(sql, id);
-            if (result.next()){
-                photo = mapRowToPhoto(result);
-            }
-        }catch (CannotGetJdbcConnectionException e ){
-            throw new DaoException("Cannot connect to database", e);
-        }
-        return photo;
+    @Override
+    public List<Photo> getPhotosByIds(Collection<Integer> ids) {
+        return queryForList(GET_PHOTOS_BY_IDS, RowMappers.PHOTO, intArray(ids));
     }
 
     @Override
     public Photo createPhoto(Photo newPhoto) {
-        Photo photo = null;
-        int newId;
-
-        String sql = "INSERT INTO photos (category, img_url) " +
-                "VALUES (?, ?) RETURNING id;";
-
-        try{
-            newId = jdbcTemplate.queryForObject(sql, int.class, newPhoto.getCategory(), newPhoto.getImgUrl());
-            photo = getPhotoById(newId);
-        }catch (CannotGetJdbcConnectionException e ){
-            throw new DaoException("Cannot connect to database", e);
-        }catch (DataIntegrityViolationException e){
-            throw new DaoException("Data integrity violation", e);
-        }
+        Photo photo = queryForFirst(CREATE_PHOTO, RowMappers.PHOTO, newPhoto.getCategory(), newPhoto.getImgUrl(),
+                newPhoto.getMediumUrl(), newPhoto.getThumbnailUrl(), newPhoto.getPlaceholder());
+        tableVersions.bump(TableVersions.Table.PHOTOS);
         return photo;
     }
 
+    @Override
+    public List<Photo> createPhotos(List<Photo> newPhotos) {
+        List<Photo> photos = queryForList(CREATE_PHOTOS, RowMappers.PHOTO,
+                textArray(newPhotos, Photo::getCategory), textArray(newPhotos, Photo::getImgUrl),
+                textArray(newPhotos, Photo::getMediumUrl), textArray(newPhotos, Photo::getThumbnailUrl),
+                textArray(newPhotos, Photo::getPlaceholder));
+        tableVersions.bump(TableVersions.Table.PHOTOS);
+        return photos;
+    }
+
     @Override
     public int deletePhoto(int id) {
-        String sql = "DELETE FROM photos WHERE id = ?;";
-
-        try{
-            return jdbcTemplate.update(sql, id);
-        }catch (CannotGetJdbcConnectionException e ){
-            throw new DaoException("Cannot connect to database", e);
-        }catch (DataIntegrityViolationException e){
-            throw new DaoException("Data integrity violation", e);
+        int rowsDeleted = update(DELETE_PHOTO, id);
+        if (rowsDeleted > 0){
+            tableVersions.bump(TableVersions.Table.PHOTOS);
         }
+        return rowsDeleted;
     }
 
-    private Photo mapRowToPhoto(SqlRowSet rowSet){
-        Photo photo = new Photo();
-        photo.setId(rowSet.getInt("id"));
-        photo.setCategory(rowSet.getString("category"));
-        photo.setImgUrl(rowSet.getString("img_url"));
-        return photo;
+    @Override
+    public int deletePhotos(Collection<Integer> ids) {
+        int rowsDeleted = update(DELETE_PHOTOS, intArray(ids));
+        if (rowsDeleted > 0){
+            tableVersions.bump(TableVersions.Table.PHOTOS);
+        }
+        return rowsDeleted;
     }
 }
@@ -0,0 +1,60 @@
+package com.usforever.dao;
+
+import com.usforever.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+@Repository
+public class JdbcRefreshTokenDao extends JdbcRepository implements RefreshTokenDao {
+
+    private static final String CREATE_TOKEN = "INSERT INTO refresh_tokens (token_hash, user_id, family, expires_at) " +
+            "VALUES (?, ?, ?, NOW() + make_interval(secs => ?));";
+    // Using up the old token, storing its successor and reading the user is one round trip, and the
+    // used_at IS NULL check makes sure two requests racing with the same token can't both succeed
+    private static final String ROTATE_TOKEN = "WITH used AS (" +
+            "UPDATE refresh_tokens SET used_at = NOW() " +
+            "WHERE token_hash = ? AND used_at IS NULL AND expires_at > NOW() RETURNING user_id, family), " +
+            "successor AS (" +
+            "INSERT INTO refresh_tokens (token_hash, user_id, family, expires_at) " +
+            "SELECT ?, user_id, family, NOW() + make_interval(secs => ?) FROM used RETURNING user_id) " +
+            "SELECT " + RowMappers.USER_COLUMNS + " FROM users WHERE id = (SELECT user_id FROM successor);";
+    private static final String REVOKE_FAMILY_OF_USED_TOKEN = "DELETE FROM refresh_tokens WHERE family = " +
+            "(SELECT family FROM refresh_tokens WHERE token_hash = ? AND used_at IS NOT NULL);";
+    private static final String REVOKE_FAMILY = "DELETE FROM refresh_tokens WHERE family = " +
+            "(SELECT family FROM refresh_tokens WHERE token_hash = ?);";
+    private static final String DELETE_EXPIRED_TOKENS = "DELETE FROM refresh_tokens " +
+            "WHERE user_id = ? AND expires_at <= NOW();";
+
+    public JdbcRefreshTokenDao(DataSource dataSource, JdbcBulkhead bulkhead,
+                               @Value("${dao.stream-fetch-size}") int streamFetchSize){
+        super(dataSource, bulkhead, streamFetchSize);
+    }
+
+    @Override
+    public void createToken(byte[] tokenHash, int userId, UUID family, long validitySeconds) {
+        update(CREATE_TOKEN, tokenHash, userId, family, (double) validitySeconds);
+    }
+
+    @Override
+    public User rotateToken(byte[] tokenHash, byte[] successorHash, long validitySeconds) {
+        return queryForFirst(ROTATE_TOKEN, RowMappers.USER, tokenHash, successorHash, (double) validitySeconds);
+    }
+
+    @Override
+    public int revokeFamilyOfUsedToken(byte[] tokenHash) {
+        return update(REVOKE_FAMILY_OF_USED_TOKEN, tokenHash);
+    }
+
+    @Override
+    public int revokeFamily(byte[] tokenHash) {
+        return update(REVOKE_FAMILY, tokenHash);
+    }
+
+    @Override
+    public int deleteExpiredTokens(int userId) {
+        return update(DELETE_EXPIRED_TOKENS, userId);
+    }
+}
@@ -0,0 +1,108 @@
+package com.usforever.dao;
+
+import com.usforever.exception.DaoException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Common plumbing for the Jdbc*Dao classes.
+ *
+ * Subclasses keep their SQL in constants with explicit column lists and map rows with the
+ * index-based mappers in {@link RowMappers}. Because the statement text never changes, the Postgres
+ * driver's per-connection statement cache reuses the server-side prepared statement instead of
+ * parsing and planning it again. Database errors are translated into DaoException here, once, and
+ * every call passes through the {@link JdbcBulkhead}.
+ */
+abstract class JdbcRepository {
+
+    // SET clauses for notes, photos and timeline, whose writes are tracked for /api/sync
+    protected static final String TOUCH = "updated_at = NOW(), change_xid = pg_current_xact_id()";
+    protected static final String SOFT_DELETE = "deleted_at = NOW(), " + TOUCH;
+
+    protected final JdbcTemplate jdbcTemplate;
+    private final JdbcBulkhead bulkhead;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate streamTransaction;
+
+    protected JdbcRepository(DataSource dataSource, JdbcBulkhead bulkhead, int streamFetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.bulkhead = bulkhead;
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(streamFetchSize);
+        // Postgres only honours the fetch size (and uses a cursor) inside a transaction
+        this.streamTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.streamTransaction.setReadOnly(true);
+    }
+
+    protected <T> List<T> queryForList(String sql, RowMapper<T> rowMapper, Object... args) {
+        return execute(() -> jdbcTemplate.query(sql, rowMapper, args));
+    }
+
+    /**
+     * Returns the first row of the result, or null if there is none.
+     */
+    protected <T> T queryForFirst(String sql, RowMapper<T> rowMapper, Object... args) {
+        List<T> rows = queryForList(sql, rowMapper, args);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    protected <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+        return execute(() -> jdbcTemplate.queryForObject(sql, requiredType, args));
+    }
+
+    protected int update(String sql, Object... args) {
+        return execute(() -> jdbcTemplate.update(sql, args));
+    }
+
+    /**
+     * Hands each row to the consumer as it is read, without collecting the result.
+     */
+    protected <T> void stream(String sql, RowMapper<T> rowMapper, Consumer<T> consumer) {
+        bulkhead.stream(() -> translate(() -> {
+            streamTransaction.executeWithoutResult(status ->
+                    streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(rowMapper.mapRow(rs, 0))));
+            return null;
+        }));
+    }
+
+    /**
+     * Binds ids as one integer[] parameter, for "id = ANY(?)".
+     */
+    protected static SqlArrayValue intArray(Collection<Integer> ids) {
+        return new SqlArrayValue("integer", ids.toArray());
+    }
+
+    /**
+     * Binds one text field of every row as a text[] parameter, for "unnest(?, ?, ...)" multi-row inserts.
+     */
+    protected static <T> SqlArrayValue textArray(List<T> rows, Function<T, String> field) {
+        return new SqlArrayValue("text", rows.stream().map(field).toArray());
+    }
+
+    protected <T> T execute(Supplier<T> operation) {
+        return bulkhead.call(() -> translate(operation));
+    }
+
+    private static <T> T translate(Supplier<T> operation) {
+        try {
+            return operation.get();
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Cannot connect to database", e);
+        } catch (DataIntegrityViolationException e) {
+            throw new DaoException("Data integrity violation", e);
+        }
+    }
+}
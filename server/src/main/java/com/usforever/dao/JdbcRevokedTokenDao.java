@@ -0,0 +1,39 @@
+package com.usforever.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+@Repository
+public class JdbcRevokedTokenDao extends JdbcRepository implements RevokedTokenDao {
+
+    private static final String REVOKE_TOKEN = "INSERT INTO revoked_tokens (token_id, expires_at) " +
+            "VALUES (CAST(? AS uuid), NOW() + make_interval(secs => ?)) ON CONFLICT (token_id) DO NOTHING;";
+    private static final String GET_REVOKED_TOKEN_IDS = "SELECT token_id::text FROM revoked_tokens WHERE expires_at > NOW();";
+    private static final String DELETE_EXPIRED_TOKENS = "DELETE FROM revoked_tokens WHERE expires_at <= NOW();";
+
+    private static final RowMapper<String> TOKEN_ID = (rs, rowNum) -> rs.getString(1);
+
+    public JdbcRevokedTokenDao(DataSource dataSource, JdbcBulkhead bulkhead,
+                               @Value("${dao.stream-fetch-size}") int streamFetchSize){
+        super(dataSource, bulkhead, streamFetchSize);
+    }
+
+    @Override
+    public void revokeToken(String tokenId, long remainingSeconds) {
+        update(REVOKE_TOKEN, tokenId, (double) remainingSeconds);
+    }
+
+    @Override
+    public List<String> getRevokedTokenIds() {
+        return queryForList(GET_REVOKED_TOKEN_IDS, TOKEN_ID);
+    }
+
+    @Override
+    public int deleteExpiredTokens() {
+        return update(DELETE_EXPIRED_TOKENS);
+    }
+}
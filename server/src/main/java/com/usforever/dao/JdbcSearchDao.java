@@ -0,0 +1,84 @@
+package com.usforever.dao;
+
+import com.usforever.model.SearchHit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.util.HtmlUtils;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Searches notes and timeline entries through their generated search_vector columns.
+ *
+ * The GIN indexes find the matching rows, so only matches are ranked; the ranked hits are ordered
+ * by (rank, type, id), all descending, and a page resumes strictly after the last hit of the one
+ * before it. ts_headline re-parses the document text, so it runs only on the rows of the page.
+ *
+ * ts_headline returns the stored text as it is, so it marks matches with control characters rather
+ * than tags: the text is HTML-escaped here and only then are the markers turned into &lt;mark&gt;
+ * tags, so nothing a user typed (a &lt;script&gt;, or a &lt;mark&gt; of their own) comes back as
+ * markup. The markers are stripped from the text first, so a stored one can't pose as a match.
+ */
+@Repository
+public class JdbcSearchDao extends JdbcRepository implements SearchDao{
+
+    private static final String HITS =
+            "WITH query AS (SELECT websearch_to_tsquery('english', ?) AS q), " +
+            "hits AS (" +
+            "SELECT '" + SearchHit.NOTE + "' AS type, id, ts_rank(search_vector, q) AS rank " +
+            "FROM notes, query WHERE search_vector @@ q AND deleted_at IS NULL " +
+            "UNION ALL " +
+            "SELECT '" + SearchHit.TIMELINE + "', id, ts_rank(search_vector, q) " +
+            "FROM timeline, query WHERE search_vector @@ q AND deleted_at IS NULL), ";
+    private static final char START_SEL = '\u0002';
+    private static final char STOP_SEL = '\u0003';
+    private static final String SELECTORS = "'StartSel=' || chr(2) || ', StopSel=' || chr(3)";
+    private static final String HEADLINES =
+            "SELECT page.type, page.id, " +
+            "ts_headline('english', translate(coalesce(n.title, t.title), chr(2) || chr(3), ''), q, " +
+            "'HighlightAll=true, ' || " + SELECTORS + "), " +
+            "ts_headline('english', translate(coalesce(n.content, t.description), chr(2) || chr(3), ''), q, " +
+            "'MaxFragments=2, MaxWords=20, MinWords=8, ' || " + SELECTORS + "), " +
+            "page.rank " +
+            "FROM page CROSS JOIN query " +
+            "LEFT JOIN notes n ON page.type = '" + SearchHit.NOTE + "' AND n.id = page.id " +
+            "LEFT JOIN timeline t ON page.type = '" + SearchHit.TIMELINE + "' AND t.id = page.id " +
+            "ORDER BY page.rank DESC, page.type DESC, page.id DESC;";
+
+    private static final String SEARCH = HITS +
+            "page AS (SELECT type, id, rank FROM hits ORDER BY rank DESC, type DESC, id DESC LIMIT ?) " +
+            HEADLINES;
+    private static final String SEARCH_AFTER = HITS +
+            "page AS (SELECT type, id, rank FROM hits WHERE (rank, type, id) < (?, ?, ?) " +
+            "ORDER BY rank DESC, type DESC, id DESC LIMIT ?) " +
+            HEADLINES;
+
+    private static final RowMapper<SearchHit> SEARCH_HIT = (rs, rowNum) -> new SearchHit(
+            rs.getString(1), rs.getInt(2), highlight(rs.getString(3)), highlight(rs.getString(4)), rs.getFloat(5));
+
+    public JdbcSearchDao(DataSource dataSource, JdbcBulkhead bulkhead,
+                         @Value("${dao.stream-fetch-size}") int streamFetchSize){
+        super(dataSource, bulkhead, streamFetchSize);
+    }
+
+    @Override
+    public List<SearchHit> search(String query, int limit) {
+        return queryForList(SEARCH, SEARCH_HIT, query, limit);
+    }
+
+    @Override
+    public List<SearchHit> searchAfter(String query, float afterRank, String afterType, int afterId, int limit) {
+        return queryForList(SEARCH_AFTER, SEARCH_HIT, query, afterRank, afterType, afterId, limit);
+    }
+
+    static String highlight(String headline) {
+        if (headline == null) {
+            return null;
+        }
+        return HtmlUtils.htmlEscape(headline)
+                .replace(String.valueOf(START_SEL), "<mark>")
+                .replace(String.valueOf(STOP_SEL), "</mark>");
+    }
+}
@@ -0,0 +1,85 @@
+package com.usforever.dao;
+
+import com.usforever.model.Note;
+import com.usforever.model.Photo;
+import com.usforever.model.Timeline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+@Repository
+public class JdbcSyncDao extends JdbcRepository implements SyncDao {
+
+    private static final String WATERMARK = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text;";
+
+    // The change_xid index serves the delta queries. Full reads are separate statements so their
+    // plans don't weigh on the cached plan for the (usually tiny) deltas
+    private static final String CHANGED = "WHERE change_xid >= CAST(? AS xid8) AND deleted_at IS NULL ORDER BY id;";
+    private static final String LIVE = "WHERE deleted_at IS NULL ORDER BY id;";
+    private static final String DELETED = "WHERE change_xid >= CAST(? AS xid8) AND deleted_at IS NOT NULL ORDER BY id;";
+
+    private static final String SELECT_NOTES = "SELECT " + RowMappers.NOTE_COLUMNS + " FROM notes ";
+    private static final String SELECT_PHOTOS = "SELECT " + RowMappers.PHOTO_COLUMNS + " FROM photos ";
+    private static final String SELECT_TIMELINE = "SELECT " + RowMappers.TIMELINE_COLUMNS + " FROM timeline ";
+
+    private static final String GET_ALL_NOTES = SELECT_NOTES + LIVE;
+    private static final String GET_NOTES_CHANGED = SELECT_NOTES + CHANGED;
+    private static final String GET_DELETED_NOTE_IDS = "SELECT id FROM notes " + DELETED;
+    private static final String GET_ALL_PHOTOS = SELECT_PHOTOS + LIVE;
+    private static final String GET_PHOTOS_CHANGED = SELECT_PHOTOS + CHANGED;
+    private static final String GET_DELETED_PHOTO_IDS = "SELECT id FROM photos " + DELETED;
+    private static final String GET_ALL_TIMELINE = SELECT_TIMELINE + LIVE;
+    private static final String GET_TIMELINE_CHANGED = SELECT_TIMELINE + CHANGED;
+    private static final String GET_DELETED_TIMELINE_IDS = "SELECT id FROM timeline " + DELETED;
+
+    private static final RowMapper<Integer> ID = (rs, rowNum) -> rs.getInt(1);
+
+    public JdbcSyncDao(DataSource dataSource, JdbcBulkhead bulkhead,
+                       @Value("${dao.stream-fetch-size}") int streamFetchSize){
+        super(dataSource, bulkhead, streamFetchSize);
+    }
+
+    @Override
+    public long watermark() {
+        return Long.parseLong(queryForObject(WATERMARK, String.class));
+    }
+
+    @Override
+    public List<Note> getNotesChangedSince(Long since) {
+        return since == null
+                ? queryForList(GET_ALL_NOTES, RowMappers.NOTE)
+                : queryForList(GET_NOTES_CHANGED, RowMappers.NOTE, Long.toString(since));
+    }
+
+    @Override
+    public List<Photo> getPhotosChangedSince(Long since) {
+        return since == null
+                ? queryForList(GET_ALL_PHOTOS, RowMappers.PHOTO)
+                : queryForList(GET_PHOTOS_CHANGED, RowMappers.PHOTO, Long.toString(since));
+    }
+
+    @Override
+    public List<Timeline> getTimelineChangedSince(Long since) {
+        return since == null
+                ? queryForList(GET_ALL_TIMELINE, RowMappers.TIMELINE)
+                : queryForList(GET_TIMELINE_CHANGED, RowMappers.TIMELINE, Long.toString(since));
+    }
+
+    @Override
+    public List<Integer> getDeletedNoteIdsSince(long since) {
+        return queryForList(GET_DELETED_NOTE_IDS, ID, Long.toString(since));
+    }
+
+    @Override
+    public List<Integer> getDeletedPhotoIdsSince(long since) {
+        return queryForList(GET_DELETED_PHOTO_IDS, ID, Long.toString(since));
+    }
+
+    @Override
+    public List<Integer> getDeletedTimelineIdsSince(long since) {
+        return queryForList(GET_DELETED_TIMELINE_IDS, ID, Long.toString(since));
+    }
+}
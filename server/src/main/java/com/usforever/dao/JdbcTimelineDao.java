@@ -1,127 +1,126 @@
 package com.usforever.dao;
 
 import com.usforever.exception.DaoException;
+import com.usforever.exception.StaleVersionException;
 import com.usforever.model.Timeline;
-import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.jdbc.CannotGetJdbcConnectionException;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
-public class JdbcTimelineDao implements TimelineDao {
-
-    private final JdbcTemplate jdbcTemplate;
-
-    public JdbcTimelineDao (DataSource dataSource){
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
+public class JdbcTimelineDao extends JdbcRepository implements TimelineDao {
+
+    private static final String SELECT_TIMELINE = "SELECT " + RowMappers.TIMELINE_COLUMNS + " FROM timeline " +
+            "WHERE deleted_at IS NULL ";
+
+    private static final String GET_ALL_TIMELINE = SELECT_TIMELINE + ";";
+    private static final String GET_TIMELINE_BY_ID = SELECT_TIMELINE + "AND id = ?;";
+    private static final String GET_TIMELINE_BY_IDS = SELECT_TIMELINE + "AND id = ANY(?);";
+    private static final String CREATE_TIMELINE = "INSERT INTO timeline (date, title, description, img_url, icon) " +
+            "VALUES (?, ?, ?, ?, ?) RETURNING " + RowMappers.TIMELINE_COLUMNS + ";";
+    // WITH ORDINALITY ... ORDER BY keeps the serial ids in the order the entries were sent
+    private static final String CREATE_TIMELINES = "INSERT INTO timeline (date, title, description, img_url, icon) " +
+            "SELECT date, title, description, img_url, icon FROM unnest(?, ?, ?, ?, ?) " +
+            "WITH ORDINALITY AS batch (date, title, description, img_url, icon, ord) " +
+            "ORDER BY ord RETURNING " + RowMappers.TIMELINE_COLUMNS + ";";
+    private static final String UPDATE_TIMELINE = "UPDATE timeline " +
+            "SET date = ?, title = ?, description = ?, img_url = ?, icon = ?, version = version + 1, " +
+            TOUCH + " WHERE id = ? AND deleted_at IS NULL RETURNING " + RowMappers.TIMELINE_COLUMNS + ";";
+    private static final String UPDATE_TIMELINE_IF_VERSION = "UPDATE timeline " +
+            "SET date = ?, title = ?, description = ?, img_url = ?, icon = ?, version = version + 1, " +
+            TOUCH + " WHERE id = ? AND version = ? AND deleted_at IS NULL RETURNING " + RowMappers.TIMELINE_COLUMNS + ";";
+    // Deleted rows stay behind as tombstones for /api/sync
+    private static final String DELETE_TIMELINE = "UPDATE timeline SET " + SOFT_DELETE +
+            " WHERE id = ? AND deleted_at IS NULL;";
+    private static final String DELETE_TIMELINES = "UPDATE timeline SET " + SOFT_DELETE +
+            " WHERE id = ANY(?) AND deleted_at IS NULL;";
+
+    private final TableVersions tableVersions;
+
+    public JdbcTimelineDao (DataSource dataSource, JdbcBulkhead bulkhead, TableVersions tableVersions,
+                            @Value("${dao.stream-fetch-size}") int streamFetchSize){
+        super(dataSource, bulkhead, streamFetchSize);
+        this.tableVersions = tableVersions;
     }
 
 
     @Override
     public List<Timeline> getAllTimeline() {
-        List<Timeline> timelines = new ArrayList<>();
-
-        String sql = "SELECT * FROM timeline;";
+        return queryForList(GET_ALL_TIMELINE, RowMappers.TIMELINE);
+    }
 
-        try{
-            SqlRowSet result = jdbcTemplate.queryForRowSet(sql);
-            while (result.next()){
-                timelines.add(mapRowToTimeline(result));
-            }
-        }catch (CannotGetJdbcConnectionException e){
-            throw new DaoException("Cannot connect to database", e);
-        }
-        return timelines;
+    @Override
+    public void streamAllTimeline(Consumer<Timeline> consumer) {
+        stream(GET_ALL_TIMELINE, RowMappers.TIMELINE, consumer);
     }
 
     @Override
     public Timeline getTimelineById(int id) {
-        Timeline timeline = null;
-
-        String sql = "SELECT * FROM timeline WHERE id = ?;";
+        return queryForFirst(GET_TIMELINE_BY_ID, RowMappers.TIMELINE, id);
+    }
 
-        try{
-            SqlRowSet result = jdbcTemplate.queryForRowSet(sql, id);
-            if (result.next()){
-                timeline = mapRowToTimeline(result);
-            }
-        }catch (CannotGetJdbcConnectionException e){
-            throw new DaoException("Cannot connect to database", e);
-        }
-        return timeline;
+    @Override
+    public List<Timeline> getTimelineByIds(Collection<Integer> ids) {
+        return queryForList(GET_TIMELINE_BY_IDS, RowMappers.TIMELINE, intArray(ids));
     }
 
     @Override
     public Timeline createTimeline(Timeline newTimeline) {
-        Timeline timeline = null;
-
-        int newId;
-
-        String sql = "INSERT INTO timeline (date, title, description, img_url, icon) " +
-                "VALUES (?, ?, ?, ?, ?) RETURNING id;";
-
-        try{
-            newId = jdbcTemplate.queryForObject(sql, int.class, newTimeline.getDate(), newTimeline.getTitle(), newTimeline.getDescription(),
-                    newTimeline.getImgUrl(), newTimeline.getIcon());
-            timeline = getTimelineById(newId);
-        }catch (CannotGetJdbcConnectionException e){
-            throw new DaoException("Cannot connect to database", e);
-        }catch (DataIntegrityViolationException e){
-            throw new DaoException("Data integrity violation", e);
-        }
+        Timeline timeline = queryForFirst(CREATE_TIMELINE, RowMappers.TIMELINE, newTimeline.getDate(), newTimeline.getTitle(),
+                newTimeline.getDescription(), newTimeline.getImgUrl(), newTimeline.getIcon());
+        tableVersions.bump(TableVersions.Table.TIMELINE);
         return timeline;
     }
 
     @Override
-    public Timeline updateTimeline(Timeline updatedTimeline) {
-        Timeline timeline = null;
-
-        String sql = "UPDATE timeline " +
-                "SET date = ?, title = ?, description = ?, img_url = ?, icon = ? " +
-                "WHERE id = ?;";
+    public List<Timeline> createTimelines(List<Timeline> newTimelines) {
+        List<Timeline> timelines = queryForList(CREATE_TIMELINES, RowMappers.TIMELINE,
+                textArray(newTimelines, Timeline::getDate), textArray(newTimelines, Timeline::getTitle),
+                textArray(newTimelines, Timeline::getDescription), textArray(newTimelines, Timeline::getImgUrl),
+                textArray(newTimelines, Timeline::getIcon));
+        tableVersions.bump(TableVersions.Table.TIMELINE);
+        return timelines;
+    }
 
-        try{
-            int rowsAffected = jdbcTemplate.update(sql, updatedTimeline.getDate(), updatedTimeline.getTitle(),
-                    updatedTimeline.getDescription(), updatedTimeline.getImgUrl(), updatedTimeline.getIcon(), updatedTimeline.getId());
-            if (rowsAffected == 0){
-                throw new DaoException("Zero rows affected");
+    @Override
+    public Timeline updateTimeline(Timeline updatedTimeline) {
+        // The version check is part of the UPDATE itself, so no row is read or locked beforehand
+        Timeline timeline = updatedTimeline.getVersion() > 0
+                ? queryForFirst(UPDATE_TIMELINE_IF_VERSION, RowMappers.TIMELINE, updatedTimeline.getDate(), updatedTimeline.getTitle(),
+                        updatedTimeline.getDescription(), updatedTimeline.getImgUrl(), updatedTimeline.getIcon(),
+                        updatedTimeline.getId(), updatedTimeline.getVersion())
+                : queryForFirst(UPDATE_TIMELINE, RowMappers.TIMELINE, updatedTimeline.getDate(), updatedTimeline.getTitle(),
+                        updatedTimeline.getDescription(), updatedTimeline.getImgUrl(), updatedTimeline.getIcon(), updatedTimeline.getId());
+        if (timeline == null){
+            Timeline current = updatedTimeline.getVersion() > 0 ? getTimelineById(updatedTimeline.getId()) : null;
+            if (current != null){
+                throw new StaleVersionException(current.getVersion());
             }
-            timeline = getTimelineById(updatedTimeline.getId());
-        }catch (CannotGetJdbcConnectionException e) {
-            throw new DaoException("Unable to connect to server or database", e);
-        } catch (DataIntegrityViolationException e) {
-            throw new DaoException("Data integrity violation", e);
+            throw new DaoException("Zero rows affected");
         }
+        tableVersions.bump(TableVersions.Table.TIMELINE);
         return timeline;
-
     }
 
     @Override
     public int deleteTimeline(int id) {
-        String sql = "DELETE FROM timeline WHERE id = ?;";
-
-        try{
-            return jdbcTemplate.update(sql, id);
-        }catch (CannotGetJdbcConnectionException e){
-            throw new DaoException("Cannot connect to database", e);
-        }catch (DataIntegrityViolationException e){
-            throw new DaoException("Data integrity violation", e);
+        int rowsDeleted = update(DELETE_TIMELINE, id);
+        if (rowsDeleted > 0){
+            tableVersions.bump(TableVersions.Table.TIMELINE);
         }
+        return rowsDeleted;
     }
 
-    private Timeline mapRowToTimeline(SqlRowSet rs){
-        Timeline timeline = new Timeline();
-        timeline.setId(rs.getInt("id"));
-        timeline.setDate(rs.getString("date"));
-        timeline.setTitle(rs.getString("title"));
-        timeline.setDescription(rs.getString("description"));
-        timeline.setImgUrl(rs.getString("img_url"));
-        timeline.setIcon(rs.getString("icon"));
-        return timeline;
+    @Override
+    public int deleteTimelines(Collection<Integer> ids) {
+        int rowsDeleted = update(DELETE_TIMELINES, intArray(ids));
+        if (rowsDeleted > 0){
+            tableVersions.bump(TableVersions.Table.TIMELINE);
+        }
+        return rowsDeleted;
     }
 }
@@ -3,59 +3,49 @@ package com.usforever.dao;
 
 import com.usforever.exception.DaoException;
 import com.usforever.model.User;
-import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.jdbc.CannotGetJdbcConnectionException;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
-import java.util.ArrayList;
 import java.util.List;
 
 @Repository
-public class JdbcUserDao implements UserDao {
-
-    private final JdbcTemplate jdbcTemplate;
-
-    public JdbcUserDao(DataSource dataSource) {
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
+public class JdbcUserDao extends JdbcRepository implements UserDao {
+
+    private static final String SELECT_USERS = "SELECT " + RowMappers.USER_COLUMNS + " FROM users ";
+
+    private static final String GET_USER_BY_ID = SELECT_USERS + "WHERE id = ?";
+    private static final String GET_USERS = SELECT_USERS + "ORDER BY id";
+    // lower(email) is what UX_users_email indexes
+    static final String GET_USER_BY_EMAIL = SELECT_USERS + "WHERE lower(email) = lower(?)";
+    private static final String COUNT_USERS = "SELECT count(*) FROM users";
+    private static final String CREATE_USER = "INSERT INTO users " +
+            "(name, display_name, email, password_hash, role) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "RETURNING id";
+
+    private final PasswordEncoder passwordEncoder;
+
+    public JdbcUserDao(DataSource dataSource, JdbcBulkhead bulkhead, @Value("${dao.stream-fetch-size}") int streamFetchSize,
+                       PasswordEncoder passwordEncoder) {
+        super(dataSource, bulkhead, streamFetchSize);
+        this.passwordEncoder = passwordEncoder;
     }
 
     @Override
     public User getUserById(int userId) {
-        User user = null;
-        String sql = "SELECT * FROM users WHERE id = ?";
-        try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql, userId);
-            if (results.next()) {
-                user = mapRowToUser(results);
-            }
-        }
-        catch (CannotGetJdbcConnectionException e) {
-            throw new DaoException("Unable to connect to server or database", e);
-        }
-        return user;
+        return queryForFirst(GET_USER_BY_ID, RowMappers.USER, userId);
     }
 
     @Override
     public List<User> getUsers() {
+        return queryForList(GET_USERS, RowMappers.USER);
+    }
 
-        List<User> users = new ArrayList<>();
-        String sql = "SELECT * FROM users ORDER BY id";
-
-        try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql);
-            while (results.next()) {
-                User user = mapRowToUser(results);
-                users.add(user);
-            }
-        }
-        catch (CannotGetJdbcConnectionException e) {
-            throw new DaoException("Unable to connect to server or database", e);
-        }
-        return users;
+    @Override
+    public int countUsers() {
+        return queryForObject(COUNT_USERS, int.class);
     }
 
     @Override
@@ -64,57 +54,19 @@ public class JdbcUserDao implements UserDao {
         if (email == null) {
             email = "";
         }
-        User user = null;
-        String sql = "SELECT * FROM users WHERE email = ?";
-
-        try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql, email);
-            if (results.next()) {
-                user = mapRowToUser(results);
-            }
-        }
-        catch (CannotGetJdbcConnectionException e) {
-            throw new DaoException("Unable to connect to server or database", e);
-        }
-        return user;
+        return queryForFirst(GET_USER_BY_EMAIL, RowMappers.USER, email);
     }
 
     @Override
     public User createUser(User newUser) {
 
-        User user = null;
-        String insertUserSql = "INSERT INTO users " +
-                "(name, display_name, email, password_hash, role) " +
-                "VALUES (?, ?, ?, ?, ?) " +
-                "RETURNING id";
-
         if (newUser.getHashedPassword() == null) {
             throw new DaoException("User cannot be created with null password");
         }
-        try {
-            String passwordHash = new BCryptPasswordEncoder().encode(newUser.getHashedPassword());
-
-            Integer userId = jdbcTemplate.queryForObject(insertUserSql, int.class, newUser.getName(), newUser.getDisplayName(),
-                    newUser.getEmail(), passwordHash, newUser.getRole());
-            user =  getUserById(userId);
-        }
-        catch (CannotGetJdbcConnectionException e) {
-            throw new DaoException("Unable to connect to server or database", e);
-        }
-        catch (DataIntegrityViolationException e) {
-            throw new DaoException("Data integrity violation", e);
-        }
-        return user;
-    }
+        String passwordHash = passwordEncoder.encode(newUser.getHashedPassword());
 
-    private User mapRowToUser(SqlRowSet rs) {
-        User user = new User();
-        user.setId(rs.getInt("id"));
-        user.setName(rs.getString("name"));
-        user.setDisplayName(rs.getString("display_name"));
-        user.setEmail(rs.getString("email"));
-        user.setHashedPassword(rs.getString("password_hash"));
-        user.setRole(rs.getString("role"));
-        return user;
+        Integer userId = queryForObject(CREATE_USER, int.class, newUser.getName(), newUser.getDisplayName(),
+                newUser.getEmail(), passwordHash, newUser.getRole());
+        return getUserById(userId);
     }
 }
@@ -2,16 +2,32 @@ package com.usforever.dao;
 
 import com.usforever.model.Note;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface NoteDao {
     List<Note> getAllNotes();
 
+    void streamAllNotes(Consumer<Note> consumer);
+
     Note getNoteById(int id);
 
+    List<Note> getNotesByIds(Collection<Integer> ids);
+
     Note createNote(Note newNote);
 
+    List<Note> createNotes(List<Note> newNotes);
+
+    /**
+     * Updates the row and returns it as stored, with its new version. If the given note carries a
+     * version, the update only applies while that is still the row's version.
+     *
+     * @throws com.usforever.exception.StaleVersionException if the row has moved on to another version
+     */
     Note updateNote(Note updatedNote);
 
     int deleteNote(int id);
+
+    int deleteNotes(Collection<Integer> ids);
 }
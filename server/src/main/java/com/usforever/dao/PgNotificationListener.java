@@ -0,0 +1,146 @@
+package com.usforever.dao;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listens on {@link ChangeDao#CHANNEL} and hands the notifications to its handlers.
+ *
+ * LISTEN belongs to a session, so this keeps one connection of its own, outside the pool, for as
+ * long as the server runs, and waits on it from a single thread. When no notification arrives for a
+ * while the connection is pinged, so a dead one is noticed. A lost connection is reopened with
+ * backoff, and handlers are told, because anything sent in between is gone.
+ */
+@Component
+public class PgNotificationListener implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PgNotificationListener.class);
+
+    private static final int POLL_MILLIS = 10_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    public interface Handler {
+        void onNotifications(List<String> payloads);
+
+        /**
+         * Called when listening resumes after the connection was lost; notifications may have been missed.
+         */
+        void onReconnect();
+    }
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final List<Handler> handlers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread thread;
+
+    public PgNotificationListener(@Value("${spring.datasource.url}") String url,
+                                  @Value("${spring.datasource.username}") String username,
+                                  @Value("${spring.datasource.password}") String password){
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    public void addHandler(Handler handler){
+        handlers.add(handler);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().name("pg-notification-listener").daemon().start(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        // Closing the connection wakes the thread from getNotifications
+        Connection current = connection;
+        if (current != null){
+            try {
+                current.close();
+            } catch (SQLException e) {
+                LOG.debug("Closing the notification connection failed", e);
+            }
+        }
+        thread.interrupt();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen(){
+        boolean listenedBefore = false;
+        long backoff = 1000;
+        while (running){
+            try (Connection listening = DriverManager.getConnection(url, username, password)){
+                connection = listening;
+                try (Statement statement = listening.createStatement()){
+                    statement.execute("LISTEN " + ChangeDao.CHANNEL);
+                }
+                if (listenedBefore){
+                    handlers.forEach(Handler::onReconnect);
+                }
+                listenedBefore = true;
+                backoff = 1000;
+
+                PGConnection pg = listening.unwrap(PGConnection.class);
+                while (running){
+                    PGNotification[] notifications = pg.getNotifications(POLL_MILLIS);
+                    if (notifications == null || notifications.length == 0){
+                        try (Statement ping = listening.createStatement()){
+                            ping.execute("SELECT 1");
+                        }
+                        continue;
+                    }
+                    List<String> payloads = new ArrayList<>(notifications.length);
+                    for (PGNotification notification : notifications){
+                        payloads.add(notification.getParameter());
+                    }
+                    dispatch(payloads);
+                }
+            } catch (SQLException e) {
+                if (!running){
+                    return;
+                }
+                LOG.warn("Lost the change notification connection, retrying in {} ms", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void dispatch(List<String> payloads){
+        for (Handler handler : handlers){
+            try {
+                handler.onNotifications(payloads);
+            } catch (RuntimeException e) {
+                // One bad handler or payload mustn't stop the listener
+                LOG.warn("Change notification handler failed", e);
+            }
+        }
+    }
+}
@@ -2,12 +2,19 @@ package com.usforever.dao;
 
 import com.usforever.model.Photo;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface PhotoDao {
     List<Photo> getAllPhotos();
+    void streamAllPhotos(Consumer<Photo> consumer);
     List<Photo> getAllPhotosByCategory(String category);
+    List<Photo> getPhotosAfterShuffleKey(int afterKey, int afterId, long upperKey, String category, int limit);
     Photo getPhotoById(int id);
+    List<Photo> getPhotosByIds(Collection<Integer> ids);
     Photo createPhoto(Photo newPhoto);
+    List<Photo> createPhotos(List<Photo> newPhotos);
     int deletePhoto(int id);
+    int deletePhotos(Collection<Integer> ids);
 }
@@ -0,0 +1,36 @@
+package com.usforever.dao;
+
+import com.usforever.model.User;
+
+import java.util.UUID;
+
+/**
+ * Refresh tokens, stored by the SHA-256 of the token.
+ */
+public interface RefreshTokenDao {
+
+    void createToken(byte[] tokenHash, int userId, UUID family, long validitySeconds);
+
+    /**
+     * Marks a live, unused token as used and stores its successor in the same family, in one statement.
+     *
+     * @return the token's user, or null if the token is unknown, expired or already used
+     */
+    User rotateToken(byte[] tokenHash, byte[] successorHash, long validitySeconds);
+
+    /**
+     * Deletes every token in the family of a token that was already used.
+     *
+     * @return the number of tokens deleted, 0 if the token wasn't a used one
+     */
+    int revokeFamilyOfUsedToken(byte[] tokenHash);
+
+    /**
+     * Deletes every token in the family of a token, used or not.
+     *
+     * @return the number of tokens deleted
+     */
+    int revokeFamily(byte[] tokenHash);
+
+    int deleteExpiredTokens(int userId);
+}
@@ -0,0 +1,21 @@
+package com.usforever.dao;
+
+import java.util.List;
+
+/**
+ * Access tokens revoked before their expiry, by their jti claim.
+ */
+public interface RevokedTokenDao {
+
+    /**
+     * Records a revoked token, kept until the token would have expired. Revoking a token twice is harmless.
+     */
+    void revokeToken(String tokenId, long remainingSeconds);
+
+    /**
+     * @return the ids of revoked tokens that haven't expired yet
+     */
+    List<String> getRevokedTokenIds();
+
+    int deleteExpiredTokens();
+}
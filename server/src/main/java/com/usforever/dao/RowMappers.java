@@ -0,0 +1,74 @@
+package com.usforever.dao;
+
+import com.usforever.model.Note;
+import com.usforever.model.Photo;
+import com.usforever.model.Timeline;
+import com.usforever.model.User;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+
+/**
+ * Column lists and the row mappers that read them.
+ *
+ * Each mapper reads its columns by position, in the order of the matching *_COLUMNS list, so a
+ * query must select exactly that list. Reading by index skips the per-column label lookup that
+ * getString("img_url") and friends do on every row.
+ */
+public final class RowMappers {
+
+    public static final String NOTE_COLUMNS = "id, title, content, created_at, version";
+    public static final String PHOTO_COLUMNS = "id, category, img_url, shuffle_key, medium_url, thumbnail_url, placeholder";
+    public static final String TIMELINE_COLUMNS = "id, date, title, description, img_url, icon, version";
+    public static final String USER_COLUMNS = "id, name, display_name, email, password_hash, role";
+
+    public static final RowMapper<Note> NOTE = (rs, rowNum) -> {
+        Note note = new Note();
+        note.setId(rs.getInt(1));
+        note.setTitle(rs.getString(2));
+        note.setContent(rs.getString(3));
+        Timestamp createdAt = rs.getTimestamp(4);
+        if (createdAt != null) {
+            note.setCreatedAt(createdAt.toLocalDateTime());
+        }
+        note.setVersion(rs.getInt(5));
+        return note;
+    };
+
+    public static final RowMapper<Photo> PHOTO = (rs, rowNum) -> {
+        Photo photo = new Photo();
+        photo.setId(rs.getInt(1));
+        photo.setCategory(rs.getString(2));
+        photo.setImgUrl(rs.getString(3));
+        photo.setShuffleKey(rs.getInt(4));
+        photo.setMediumUrl(rs.getString(5));
+        photo.setThumbnailUrl(rs.getString(6));
+        photo.setPlaceholder(rs.getString(7));
+        return photo;
+    };
+
+    public static final RowMapper<Timeline> TIMELINE = (rs, rowNum) -> {
+        Timeline timeline = new Timeline();
+        timeline.setId(rs.getInt(1));
+        timeline.setDate(rs.getString(2));
+        timeline.setTitle(rs.getString(3));
+        timeline.setDescription(rs.getString(4));
+        timeline.setImgUrl(rs.getString(5));
+        timeline.setIcon(rs.getString(6));
+        timeline.setVersion(rs.getInt(7));
+        return timeline;
+    };
+
+    public static final RowMapper<User> USER = (rs, rowNum) -> {
+        User user = new User();
+        user.setId(rs.getInt(1));
+        user.setName(rs.getString(2));
+        user.setDisplayName(rs.getString(3));
+        user.setEmail(rs.getString(4));
+        user.setHashedPassword(rs.getString(5));
+        user.setRole(rs.getString(6));
+        return user;
+    };
+
+    private RowMappers() { }
+}
@@ -0,0 +1,10 @@
+package com.usforever.dao;
+
+import com.usforever.model.SearchHit;
+
+import java.util.List;
+
+public interface SearchDao {
+    List<SearchHit> search(String query, int limit);
+    List<SearchHit> searchAfter(String query, float afterRank, String afterType, int afterId, int limit);
+}
@@ -0,0 +1,246 @@
+package com.usforever.dao;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times every statement run on connections from the pool and reports them to {@link SlowQueryLog}.
+ *
+ * Connections and statements are JDK proxies that pass every call straight through. A statement
+ * remembers its bind calls, and the time of each execute call is measured. Only a statement that
+ * was slow pays for more: its binds are copied for the EXPLAIN, and its ResultSet is wrapped to
+ * count rows, with the report made when the ResultSet or statement is closed. For a statement read
+ * through a cursor (the ?stream=true lists) the time covers the first batch of rows only.
+ */
+class SlowQueryDataSource extends DelegatingDataSource {
+
+    private final SlowQueryLog slowQueryLog;
+
+    SlowQueryDataSource(DataSource target, SlowQueryLog slowQueryLog) {
+        super(target);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Handles the Object methods by identity, so a proxy equals itself and nothing else.
+     *
+     * @return the result, or null if the method isn't one of them
+     */
+    private static Object identity(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> args.length == 1 ? proxy == args[0] : null;
+            case "hashCode" -> args == null ? System.identityHashCode(proxy) : null;
+            default -> null;
+        };
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object same = identity(proxy, method, args);
+            if (same != null) {
+                return same;
+            }
+            Object result = SlowQueryDataSource.invoke(target, method, args);
+            return switch (method.getName()) {
+                case "prepareStatement" -> wrap(result, PreparedStatement.class, (String) args[0]);
+                case "prepareCall" -> wrap(result, CallableStatement.class, (String) args[0]);
+                case "createStatement" -> wrap(result, Statement.class, null);
+                default -> result;
+            };
+        }
+
+        private Object wrap(Object statement, Class<?> type, String sql) {
+            return Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler((Statement) statement, sql));
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        // Null for a plain Statement, whose SQL comes with each execute call
+        private final String sql;
+        // The bind calls made so far, by parameter index - 1
+        private final List<Object[]> binds = new ArrayList<>();
+        private final List<Method> bindMethods = new ArrayList<>();
+        private RowCounter pending;
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object same = identity(proxy, method, args);
+            if (same != null) {
+                return same;
+            }
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, method, args);
+            } else if (name.equals("clearParameters")) {
+                binds.clear();
+                bindMethods.clear();
+            } else if (name.equals("close")) {
+                finishPending();
+            }
+            return SlowQueryDataSource.invoke(target, method, args);
+        }
+
+        private void bind(int index, Method method, Object[] args) {
+            while (binds.size() < index) {
+                binds.add(null);
+                bindMethods.add(null);
+            }
+            binds.set(index - 1, args);
+            bindMethods.set(index - 1, method);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishPending();
+            String statementSql = sql != null ? sql : (String) args[0];
+            long start = System.nanoTime();
+            Object result = SlowQueryDataSource.invoke(target, method, args);
+            long elapsedNanos = System.nanoTime() - start;
+            if (!slowQueryLog.record(statementSql, elapsedNanos)) {
+                return result;
+            }
+            SlowQueryLog.Binds snapshot;
+            try {
+                snapshot = SlowQueryLog.Binds.copyOf(bindMethods, binds);
+            } catch (SQLException | RuntimeException e) {
+                // The statement itself succeeded, so it's reported without a plan rather than failed
+                snapshot = SlowQueryLog.Binds.typesOf(bindMethods, binds);
+            }
+            if (result instanceof ResultSet resultSet) {
+                pending = new RowCounter(resultSet, statementSql, elapsedNanos, snapshot);
+                return Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(), new Class<?>[]{ResultSet.class}, pending);
+            }
+            slowQueryLog.recordSlow(statementSql, elapsedNanos, snapshot, rowsIn(result));
+            return result;
+        }
+
+        private void finishPending() {
+            if (pending != null) {
+                pending.finish();
+                pending = null;
+            }
+        }
+    }
+
+    private static long rowsIn(Object result) {
+        if (result instanceof Integer rows) {
+            return rows;
+        }
+        if (result instanceof Long rows) {
+            return rows;
+        }
+        if (result instanceof int[] batch) {
+            long rows = 0;
+            for (int count : batch) {
+                rows += Math.max(count, 0);
+            }
+            return rows;
+        }
+        if (result instanceof long[] batch) {
+            long rows = 0;
+            for (long count : batch) {
+                rows += Math.max(count, 0);
+            }
+            return rows;
+        }
+        // execute() says whether there is a ResultSet, not how many rows
+        return -1;
+    }
+
+    /**
+     * The ResultSet of a slow query, counting rows as they are read and reporting when it is closed.
+     */
+    private class RowCounter implements InvocationHandler {
+
+        private final ResultSet target;
+        private final String sql;
+        private final long elapsedNanos;
+        private final SlowQueryLog.Binds binds;
+        private long rows;
+        private boolean finished;
+
+        RowCounter(ResultSet target, String sql, long elapsedNanos, SlowQueryLog.Binds binds) {
+            this.target = target;
+            this.sql = sql;
+            this.elapsedNanos = elapsedNanos;
+            this.binds = binds;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object same = identity(proxy, method, args);
+            if (same != null) {
+                return same;
+            }
+            if (method.getName().equals("close")) {
+                finish();
+            }
+            Object result = SlowQueryDataSource.invoke(target, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                rows++;
+            }
+            return result;
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                slowQueryLog.recordSlow(sql, elapsedNanos, binds, rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.usforever.dao;
+
+import com.usforever.model.SlowStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Times every SQL statement and logs the slow ones with their plan.
+ *
+ * The application's DataSource is wrapped in a {@link SlowQueryDataSource}, which reports each
+ * statement here. Statements are grouped by their normalized text (literals and lists of
+ * placeholders collapsed to a single ?, whitespace squeezed), and each group keeps its count, total
+ * and maximum time for /api/admin/slow-queries.
+ *
+ * A statement slower than the threshold is logged with its SQL, the types of its bind parameters
+ * (never their values) and its row count. Its plan is captured with EXPLAIN, which plans the
+ * statement without running it, on a background thread and a connection of its own, replaying the
+ * same binds; a statement is explained at most once per explain interval, and the plan is kept for
+ * the log lines in between. At most max-logs-per-minute lines are written, and the next line says
+ * how many were left out.
+ */
+@Component
+public class SlowQueryLog implements BeanPostProcessor, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(?:SELECT|INSERT|UPDATE|DELETE|WITH|VALUES)\\b",
+            Pattern.CASE_INSENSITIVE);
+    // The SQL is all constants, so these only guard against something generating statements without end
+    private static final int MAX_STATEMENTS = 1000;
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final long thresholdNanos;
+    private final int maxLogsPerMinute;
+    private final long explainIntervalNanos;
+    private final Map<String, Stats> bySql = new ConcurrentHashMap<>();
+    private final Map<String, Stats> byNormalizedSql = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(16), Thread.ofPlatform().name("slow-query-explain").daemon().factory(),
+            new ThreadPoolExecutor.AbortPolicy());
+    private final AtomicLong logWindowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger logsInWindow = new AtomicInteger();
+    private final AtomicLong suppressedLogs = new AtomicLong();
+    // The unwrapped pool, so EXPLAIN isn't timed itself
+    private volatile DataSource explainDataSource;
+
+    public SlowQueryLog(@Value("${dao.slow-query.threshold-ms}") long thresholdMillis,
+                        @Value("${dao.slow-query.max-logs-per-minute}") int maxLogsPerMinute,
+                        @Value("${dao.slow-query.explain-interval-seconds}") long explainIntervalSeconds) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.maxLogsPerMinute = maxLogsPerMinute;
+        this.explainIntervalNanos = TimeUnit.SECONDS.toNanos(explainIntervalSeconds);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource) || bean instanceof SlowQueryDataSource) {
+            return bean;
+        }
+        explainDataSource = dataSource;
+        return new SlowQueryDataSource(dataSource, this);
+    }
+
+    @Override
+    public void destroy() {
+        explainer.shutdownNow();
+    }
+
+    /**
+     * The statements with the longest single execution, slowest first.
+     */
+    public List<SlowStatement> getSlowestStatements(int limit) {
+        List<SlowStatement> statements = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : byNormalizedSql.entrySet()) {
+            Stats stats = entry.getValue();
+            statements.add(new SlowStatement(entry.getKey(), stats.count.sum(), stats.slowCount.sum(),
+                    stats.totalNanos.sum() / 1e6, stats.maxNanos.get() / 1e6, stats.parameterTypes, stats.rows,
+                    stats.plan, stats.planCapturedAt));
+        }
+        statements.sort(Comparator.comparingDouble(SlowStatement::getMaxMillis).reversed());
+        return statements.subList(0, Math.clamp(limit, 0, statements.size()));
+    }
+
+    /**
+     * Counts one execution of a statement.
+     *
+     * @return whether it was slow, in which case the caller follows up with recordSlow
+     */
+    boolean record(String sql, long elapsedNanos) {
+        Stats stats = statsFor(sql);
+        if (stats != null) {
+            stats.count.increment();
+            stats.totalNanos.add(elapsedNanos);
+            if (elapsedNanos > stats.maxNanos.get()) {
+                stats.maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+            }
+        }
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    void recordSlow(String sql, long elapsedNanos, Binds binds, long rows) {
+        Stats stats = statsFor(sql);
+        String parameterTypes = binds.types();
+        if (stats == null) {
+            log(sql, elapsedNanos, parameterTypes, rows, null);
+            return;
+        }
+        stats.slowCount.increment();
+        stats.parameterTypes = parameterTypes;
+        stats.rows = rows;
+        long now = System.nanoTime();
+        long nextExplain = stats.nextExplain.get();
+        boolean explain = explainDataSource != null && binds.replayable() && EXPLAINABLE.matcher(sql).find()
+                && now - nextExplain >= 0 && stats.nextExplain.compareAndSet(nextExplain, now + explainIntervalNanos);
+        if (!explain) {
+            log(sql, elapsedNanos, parameterTypes, rows, stats.plan);
+            return;
+        }
+        try {
+            explainer.execute(() -> {
+                String plan = explain(sql, binds);
+                if (plan != null) {
+                    stats.plan = plan;
+                    stats.planCapturedAt = Instant.now();
+                }
+                log(sql, elapsedNanos, parameterTypes, rows, stats.plan);
+            });
+        } catch (RuntimeException e) {
+            log(sql, elapsedNanos, parameterTypes, rows, stats.plan);
+        }
+    }
+
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER.matcher(normalized).replaceAll("?");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        normalized = PLACEHOLDER_LIST.matcher(normalized).replaceAll("?");
+        return normalized.endsWith(";") ? normalized.substring(0, normalized.length() - 1).trim() : normalized;
+    }
+
+    private Stats statsFor(String sql) {
+        Stats stats = bySql.get(sql);
+        if (stats != null || bySql.size() >= MAX_STATEMENTS) {
+            return stats;
+        }
+        String normalized = normalize(sql);
+        stats = byNormalizedSql.get(normalized);
+        if (stats == null) {
+            if (byNormalizedSql.size() >= MAX_STATEMENTS) {
+                return null;
+            }
+            stats = byNormalizedSql.computeIfAbsent(normalized, key -> new Stats());
+        }
+        bySql.putIfAbsent(sql, stats);
+        return stats;
+    }
+
+    private String explain(String sql, Binds binds) {
+        try (Connection connection = explainDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN (ANALYZE OFF) " + sql)) {
+            binds.applyTo(statement);
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+            return plan.toString().stripTrailing();
+        } catch (SQLException | ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("Could not EXPLAIN {}", sql, e);
+            return null;
+        }
+    }
+
+    private void log(String sql, long elapsedNanos, String parameterTypes, long rows, String plan) {
+        long now = System.nanoTime();
+        long windowStart = logWindowStart.get();
+        if (now - windowStart >= MINUTE_NANOS && logWindowStart.compareAndSet(windowStart, now)) {
+            logsInWindow.set(0);
+        }
+        if (logsInWindow.incrementAndGet() > maxLogsPerMinute) {
+            suppressedLogs.incrementAndGet();
+            return;
+        }
+        long suppressed = suppressedLogs.getAndSet(0);
+        LOG.warn("Slow statement took {} ms, {} rows, parameters {}{}: {}\n{}",
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rows < 0 ? "?" : rows, parameterTypes,
+                suppressed > 0 ? " (" + suppressed + " slow statements not logged)" : "",
+                WHITESPACE.matcher(sql).replaceAll(" ").trim(),
+                plan != null ? plan : "(no plan captured)");
+    }
+
+    private static class Stats {
+
+        final LongAdder count = new LongAdder();
+        final LongAdder slowCount = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLong nextExplain = new AtomicLong(System.nanoTime());
+        volatile String parameterTypes;
+        volatile long rows;
+        volatile String plan;
+        volatile Instant planCapturedAt;
+    }
+
+    /**
+     * The bind calls of a slow statement, copied so they can be replayed for EXPLAIN after the
+     * statement is closed. Arrays are copied out of the connection that created them; streams, readers
+     * and LOBs can't be read twice, so a statement bound with one isn't explained.
+     */
+    static final class Binds {
+
+        private final List<Method> methods;
+        private final List<Object[]> args;
+        private final boolean replayable;
+
+        private Binds(List<Method> methods, List<Object[]> args, boolean replayable) {
+            this.methods = methods;
+            this.args = args;
+            this.replayable = replayable;
+        }
+
+        static Binds copyOf(List<Method> methods, List<Object[]> args) throws SQLException {
+            List<Object[]> copies = new ArrayList<>(args.size());
+            boolean replayable = true;
+            for (int i = 0; i < args.size(); i++) {
+                Object[] call = args.get(i);
+                if (call == null) {
+                    copies.add(null);
+                    continue;
+                }
+                Object[] copy = call.clone();
+                if (copy[1] instanceof Array array) {
+                    copy[1] = new ArrayValue(array.getBaseTypeName(), (Object[]) array.getArray());
+                } else if (copy[1] instanceof java.io.InputStream || copy[1] instanceof java.io.Reader
+                        || copy[1] instanceof java.sql.Blob || copy[1] instanceof java.sql.Clob) {
+                    replayable = false;
+                }
+                copies.add(copy);
+            }
+            return new Binds(new ArrayList<>(methods), copies, replayable);
+        }
+
+        /**
+         * The bind calls as made, for their types only, when they couldn't be copied for the EXPLAIN.
+         */
+        static Binds typesOf(List<Method> methods, List<Object[]> args) {
+            return new Binds(new ArrayList<>(methods), new ArrayList<>(args), false);
+        }
+
+        boolean replayable() {
+            return replayable;
+        }
+
+        String types() {
+            StringJoiner types = new StringJoiner(", ", "[", "]");
+            for (int i = 0; i < args.size(); i++) {
+                Object[] call = args.get(i);
+                types.add(call == null ? "unset" : typeOf(methods.get(i), call));
+            }
+            return types.toString();
+        }
+
+        void applyTo(PreparedStatement statement) throws SQLException, ReflectiveOperationException {
+            for (int i = 0; i < args.size(); i++) {
+                Object[] call = args.get(i);
+                if (call == null) {
+                    continue;
+                }
+                if (call[1] instanceof ArrayValue array) {
+                    statement.setArray(i + 1, statement.getConnection().createArrayOf(array.baseType(), array.elements()));
+                } else {
+                    methods.get(i).invoke(statement, call);
+                }
+            }
+        }
+
+        private static String typeOf(Method method, Object[] call) {
+            String setter = method.getName().substring("set".length());
+            return switch (setter) {
+                case "Null" -> "null " + jdbcTypeName((Integer) call[1]);
+                case "Object" -> call[1] == null ? "null" : call[1].getClass().getSimpleName();
+                case "Array" -> call[1] instanceof ArrayValue array ? "Array " + array.baseType().toLowerCase(Locale.ROOT) : "Array";
+                default -> setter;
+            };
+        }
+
+        private static String jdbcTypeName(int type) {
+            try {
+                return JDBCType.valueOf(type).getName();
+            } catch (IllegalArgumentException e) {
+                return Integer.toString(type);
+            }
+        }
+
+        private record ArrayValue(String baseType, Object[] elements) { }
+    }
+}
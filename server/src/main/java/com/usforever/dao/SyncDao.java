@@ -0,0 +1,28 @@
+package com.usforever.dao;
+
+import com.usforever.model.Note;
+import com.usforever.model.Photo;
+import com.usforever.model.Timeline;
+
+import java.util.List;
+
+/**
+ * Reads for /api/sync. A watermark is a transaction id: every row written by a transaction at or after
+ * it counts as changed. Passing null for since asks for every live row.
+ */
+public interface SyncDao {
+
+    /**
+     * Returns the oldest transaction that could still be running. Anything committed later has an id
+     * at or above it, so reading changes since this value next time can never miss a write.
+     */
+    long watermark();
+
+    List<Note> getNotesChangedSince(Long since);
+    List<Photo> getPhotosChangedSince(Long since);
+    List<Timeline> getTimelineChangedSince(Long since);
+
+    List<Integer> getDeletedNoteIdsSince(long since);
+    List<Integer> getDeletedPhotoIdsSince(long since);
+    List<Integer> getDeletedTimelineIdsSince(long since);
+}
@@ -0,0 +1,44 @@
+package com.usforever.dao;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TableVersions keeps a counter per table that the Jdbc*Dao classes bump after every successful write.
+ *
+ * Anything derived from a table's contents (cached lists, ETags) can be keyed by the version that was
+ * current when it was read, so a write makes it stale without having to find and clear it first.
+ * Versions start over when the server restarts, which is why the ETag also carries the start time.
+ */
+@Component
+public class TableVersions {
+
+    public enum Table { NOTES, PHOTOS, TIMELINE }
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Table, AtomicLong> versions = new EnumMap<>(Table.class);
+
+    public TableVersions() {
+        for (Table table : Table.values()) {
+            versions.put(table, new AtomicLong());
+        }
+    }
+
+    public long current(Table table) {
+        return versions.get(table).get();
+    }
+
+    public void bump(Table table) {
+        versions.get(table).incrementAndGet();
+    }
+
+    /**
+     * Builds the quoted entity tag for a version previously read with {@link #current(Table)}.
+     */
+    public String etag(Table table, long version) {
+        return "\"" + table.name().toLowerCase() + "-" + epoch + "-" + version + "\"";
+    }
+}
@@ -3,16 +3,32 @@ package com.usforever.dao;
 import com.usforever.model.Timeline;
 
 import java.sql.Time;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TimelineDao {
     List<Timeline> getAllTimeline();
 
+    void streamAllTimeline(Consumer<Timeline> consumer);
+
     Timeline getTimelineById(int id);
 
+    List<Timeline> getTimelineByIds(Collection<Integer> ids);
+
     Timeline createTimeline (Timeline newTimeline);
 
+    List<Timeline> createTimelines(List<Timeline> newTimelines);
+
+    /**
+     * Updates the row and returns it as stored, with its new version. If the given timeline carries a
+     * version, the update only applies while that is still the row's version.
+     *
+     * @throws com.usforever.exception.StaleVersionException if the row has moved on to another version
+     */
     Timeline updateTimeline (Timeline updatedTimeline);
 
     int deleteTimeline(int id);
+
+    int deleteTimelines(Collection<Integer> ids);
 }
@@ -10,8 +10,13 @@ public interface UserDao {
 
     List<User> getUsers();
 
+    int countUsers();
+
     User getUserById(int userId);
 
+    /**
+     * Matches the email case-insensitively.
+     */
     User getUserByEmail(String email);
 
     User createUser(User newUser);
@@ -0,0 +1,19 @@
+package com.usforever.exception;
+
+/**
+ * Thrown when a password can't be hashed or checked right now because every hashing thread is busy
+ * and the queue in front of them is full. The caller should try again after retryAfterSeconds.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingBusyException(long retryAfterSeconds){
+        super("Too many passwords being hashed, try again in " + retryAfterSeconds + "s");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,19 @@
+package com.usforever.exception;
+
+/**
+ * Thrown when an update names a version of a row that is no longer current, because someone else
+ * updated the row in the meantime.
+ */
+public class StaleVersionException extends DaoException {
+
+    private final int currentVersion;
+
+    public StaleVersionException(int currentVersion){
+        super("Row was updated since version was read, current version is " + currentVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+}
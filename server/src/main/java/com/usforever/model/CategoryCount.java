@@ -0,0 +1,34 @@
+package com.usforever.model;
+
+/**
+ * CategoryCount is one gallery category and how many photos are in it.
+ */
+public class CategoryCount {
+
+    private String category;
+    private int count;
+
+    public CategoryCount() {
+    }
+
+    public CategoryCount(String category, int count) {
+        this.category = category;
+        this.count = count;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
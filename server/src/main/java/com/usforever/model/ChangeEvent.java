@@ -0,0 +1,56 @@
+package com.usforever.model;
+
+import java.util.List;
+
+/**
+ * ChangeEvent says that rows of one table were created, updated or deleted, by this server or another.
+ *
+ * Only ids travel in the event; clients fetch the rows they care about. A RESET event carries no ids and
+ * means changes may have been missed, so anything held from the table should be fetched again.
+ */
+public class ChangeEvent {
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String RESET = "reset";
+
+    // "notes", "photos" or "timeline"
+    private String table;
+    // CREATED, UPDATED, DELETED or RESET
+    private String type;
+    private List<Integer> ids;
+
+    public ChangeEvent() {
+    }
+
+    public ChangeEvent(String table, String type, List<Integer> ids) {
+        this.table = table;
+        this.type = type;
+        this.ids = ids;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Integer> ids) {
+        this.ids = ids;
+    }
+}
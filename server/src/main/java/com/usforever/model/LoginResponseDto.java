@@ -6,16 +6,21 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * LoginResponseDto is a class used to hold both the authentication token and the user
  * information that's returned from the server to the client from a login endpoint.
  *
+ * token is the short-lived access token. refreshToken is exchanged at /api/refresh for the next
+ * pair once token expires, and is only good for one exchange.
+ *
  * The acronym DTO is being used for "data transfer object". It means that this type of
  * class is specifically created to transfer data between the client and the server.
  */
 public class LoginResponseDto {
 
     private String token;
+    private String refreshToken;
     private User user;
 
-    public LoginResponseDto(String token, User user) {
+    public LoginResponseDto(String token, String refreshToken, User user) {
         this.token = token;
+        this.refreshToken = refreshToken;
         this.user = user;
     }
 
@@ -28,6 +33,15 @@ public class LoginResponseDto {
         this.token = token;
     }
 
+    @JsonProperty("refreshToken")
+    String getRefreshToken() {
+        return refreshToken;
+    }
+
+    void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
     @JsonProperty("user")
     public User getUser() {
         return user;
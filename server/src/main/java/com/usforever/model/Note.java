@@ -8,6 +8,8 @@ public class Note {
     private String title;
     private String content;
     private LocalDateTime createdAt;
+    // Bumped by every update; an update naming a version only applies if it is still current
+    private int version;
 
     public Note() {
     }
@@ -57,17 +59,25 @@ public class Note {
         this.createdAt = createdAt;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Note note = (Note) o;
-        return id == note.id && Objects.equals(title, note.title) && Objects.equals(content, note.content) && Objects.equals(createdAt, note.createdAt);
+        return id == note.id && version == note.version && Objects.equals(title, note.title) && Objects.equals(content, note.content) && Objects.equals(createdAt, note.createdAt);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, title, content, createdAt);
+        return Objects.hash(id, title, content, createdAt, version);
     }
 
     @Override
@@ -77,6 +87,7 @@ public class Note {
                 ", title='" + title + '\'' +
                 ", content='" + content + '\'' +
                 ", createdAt=" + createdAt +
+                ", version=" + version +
                 '}';
     }
 }
@@ -1,9 +1,18 @@
 package com.usforever.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class Photo {
     private int id;
     private String category;
     private String imgUrl;
+    // Resized copies made for uploaded images; null for videos and for photos added by URL
+    private String mediumUrl;
+    private String thumbnailUrl;
+    // A tiny JPEG as a data URI, to show blurred while the thumbnail loads
+    private String placeholder;
+    @JsonIgnore
+    private int shuffleKey;
 
     public Photo() {
     }
@@ -42,4 +51,36 @@ public class Photo {
     public void setImgUrl(String imgUrl) {
         this.imgUrl = imgUrl;
     }
+
+    public String getMediumUrl() {
+        return mediumUrl;
+    }
+
+    public void setMediumUrl(String mediumUrl) {
+        this.mediumUrl = mediumUrl;
+    }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    public void setPlaceholder(String placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    public int getShuffleKey() {
+        return shuffleKey;
+    }
+
+    public void setShuffleKey(int shuffleKey) {
+        this.shuffleKey = shuffleKey;
+    }
 }
@@ -0,0 +1,39 @@
+package com.usforever.model;
+
+import java.util.List;
+
+/**
+ * PhotoPage is one page of the seeded gallery feed.
+ *
+ * nextCursor is an opaque token the client passes back (with the same seed) to get the following
+ * page. It is null once the feed has been exhausted.
+ */
+public class PhotoPage {
+
+    private List<Photo> photos;
+    private String nextCursor;
+
+    public PhotoPage() {
+    }
+
+    public PhotoPage(List<Photo> photos, String nextCursor) {
+        this.photos = photos;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Photo> getPhotos() {
+        return photos;
+    }
+
+    public void setPhotos(List<Photo> photos) {
+        this.photos = photos;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,26 @@
+package com.usforever.model;
+
+import jakarta.validation.constraints.NotEmpty;
+
+/**
+ * RefreshDto holds the refresh token the client sends to /api/refresh in exchange for a new access token.
+ */
+public class RefreshDto {
+
+   @NotEmpty
+   private String refreshToken;
+
+   public String getRefreshToken() {
+      return refreshToken;
+   }
+
+   public void setRefreshToken(String refreshToken) {
+      this.refreshToken = refreshToken;
+   }
+
+   @Override
+   public String toString() {
+      // Never log the token itself
+      return "RefreshDto{}";
+   }
+}
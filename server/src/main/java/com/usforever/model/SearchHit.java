@@ -0,0 +1,71 @@
+package com.usforever.model;
+
+/**
+ * SearchHit is one note or timeline entry matching a search.
+ *
+ * title and snippet are HTML: the matching text, escaped, with each matched term wrapped in
+ * &lt;mark&gt;&lt;/mark&gt;. The marks are the only markup in them, so they can be rendered as they are.
+ */
+public class SearchHit {
+
+    public static final String NOTE = "note";
+    public static final String TIMELINE = "timeline";
+
+    // NOTE or TIMELINE, saying which table id belongs to
+    private String type;
+    private int id;
+    private String title;
+    private String snippet;
+    private float rank;
+
+    public SearchHit() {
+    }
+
+    public SearchHit(String type, int id, String title, String snippet, float rank) {
+        this.type = type;
+        this.id = id;
+        this.title = title;
+        this.snippet = snippet;
+        this.rank = rank;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    public float getRank() {
+        return rank;
+    }
+
+    public void setRank(float rank) {
+        this.rank = rank;
+    }
+}
@@ -0,0 +1,39 @@
+package com.usforever.model;
+
+import java.util.List;
+
+/**
+ * SearchPage is one page of search hits, best match first.
+ *
+ * nextCursor is an opaque token the client passes back (with the same query) to get the following
+ * page. It is null once there are no more hits.
+ */
+public class SearchPage {
+
+    private List<SearchHit> hits;
+    private String nextCursor;
+
+    public SearchPage() {
+    }
+
+    public SearchPage(List<SearchHit> hits, String nextCursor) {
+        this.hits = hits;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    public void setHits(List<SearchHit> hits) {
+        this.hits = hits;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
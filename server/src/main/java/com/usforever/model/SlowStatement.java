@@ -0,0 +1,73 @@
+package com.usforever.model;
+
+import java.time.Instant;
+
+/**
+ * SlowStatement is the timing record of one normalized SQL statement, returned by the admin endpoint.
+ * The parameter types, row count and plan are those of its most recent slow execution.
+ */
+public class SlowStatement {
+
+    private String sql;
+    private long count;
+    private long slowCount;
+    private double totalMillis;
+    private double maxMillis;
+    private String parameterTypes;
+    private long rows;
+    private String plan;
+    private Instant planCapturedAt;
+
+    public SlowStatement(String sql, long count, long slowCount, double totalMillis, double maxMillis,
+                         String parameterTypes, long rows, String plan, Instant planCapturedAt) {
+        this.sql = sql;
+        this.count = count;
+        this.slowCount = slowCount;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.parameterTypes = parameterTypes;
+        this.rows = rows;
+        this.plan = plan;
+        this.planCapturedAt = planCapturedAt;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSlowCount() {
+        return slowCount;
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public double getMeanMillis() {
+        return count == 0 ? 0 : totalMillis / count;
+    }
+
+    public String getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public Instant getPlanCapturedAt() {
+        return planCapturedAt;
+    }
+}
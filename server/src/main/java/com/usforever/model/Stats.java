@@ -0,0 +1,82 @@
+package com.usforever.model;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Stats sums up everything stored.
+ *
+ * notesPerMonth is keyed by "yyyy-MM", oldest month first, and leaves out months without notes.
+ * timelineStart and timelineEnd are the earliest and latest timeline dates that could be read as a
+ * date; they are null when none could.
+ */
+public class Stats {
+
+    private int photos;
+    private int notes;
+    private Map<String, Integer> notesPerMonth;
+    private int timelineEntries;
+    private LocalDate timelineStart;
+    private LocalDate timelineEnd;
+
+    public Stats() {
+    }
+
+    public Stats(int photos, int notes, Map<String, Integer> notesPerMonth, int timelineEntries,
+                 LocalDate timelineStart, LocalDate timelineEnd) {
+        this.photos = photos;
+        this.notes = notes;
+        this.notesPerMonth = notesPerMonth;
+        this.timelineEntries = timelineEntries;
+        this.timelineStart = timelineStart;
+        this.timelineEnd = timelineEnd;
+    }
+
+    public int getPhotos() {
+        return photos;
+    }
+
+    public void setPhotos(int photos) {
+        this.photos = photos;
+    }
+
+    public int getNotes() {
+        return notes;
+    }
+
+    public void setNotes(int notes) {
+        this.notes = notes;
+    }
+
+    public Map<String, Integer> getNotesPerMonth() {
+        return notesPerMonth;
+    }
+
+    public void setNotesPerMonth(Map<String, Integer> notesPerMonth) {
+        this.notesPerMonth = notesPerMonth;
+    }
+
+    public int getTimelineEntries() {
+        return timelineEntries;
+    }
+
+    public void setTimelineEntries(int timelineEntries) {
+        this.timelineEntries = timelineEntries;
+    }
+
+    public LocalDate getTimelineStart() {
+        return timelineStart;
+    }
+
+    public void setTimelineStart(LocalDate timelineStart) {
+        this.timelineStart = timelineStart;
+    }
+
+    public LocalDate getTimelineEnd() {
+        return timelineEnd;
+    }
+
+    public void setTimelineEnd(LocalDate timelineEnd) {
+        this.timelineEnd = timelineEnd;
+    }
+}
@@ -0,0 +1,103 @@
+package com.usforever.model;
+
+import java.util.List;
+
+/**
+ * SyncChanges is what changed in notes, photos and timeline since a client last synced.
+ *
+ * The lists hold rows created or updated since then (each row at most once, in its latest state) and
+ * the ids of rows deleted since then. When full is true the client sent no token, so the lists hold
+ * every row and the client should replace what it has. token is passed back as since on the next
+ * sync. A row may show up again in the sync after the one that first returned it; apply it as usual.
+ */
+public class SyncChanges {
+
+    private boolean full;
+    private List<Note> notes;
+    private List<Photo> photos;
+    private List<Timeline> timeline;
+    private List<Integer> deletedNoteIds;
+    private List<Integer> deletedPhotoIds;
+    private List<Integer> deletedTimelineIds;
+    private String token;
+
+    public SyncChanges() {
+    }
+
+    public SyncChanges(boolean full, List<Note> notes, List<Photo> photos, List<Timeline> timeline,
+                       List<Integer> deletedNoteIds, List<Integer> deletedPhotoIds, List<Integer> deletedTimelineIds,
+                       String token) {
+        this.full = full;
+        this.notes = notes;
+        this.photos = photos;
+        this.timeline = timeline;
+        this.deletedNoteIds = deletedNoteIds;
+        this.deletedPhotoIds = deletedPhotoIds;
+        this.deletedTimelineIds = deletedTimelineIds;
+        this.token = token;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public List<Note> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(List<Note> notes) {
+        this.notes = notes;
+    }
+
+    public List<Photo> getPhotos() {
+        return photos;
+    }
+
+    public void setPhotos(List<Photo> photos) {
+        this.photos = photos;
+    }
+
+    public List<Timeline> getTimeline() {
+        return timeline;
+    }
+
+    public void setTimeline(List<Timeline> timeline) {
+        this.timeline = timeline;
+    }
+
+    public List<Integer> getDeletedNoteIds() {
+        return deletedNoteIds;
+    }
+
+    public void setDeletedNoteIds(List<Integer> deletedNoteIds) {
+        this.deletedNoteIds = deletedNoteIds;
+    }
+
+    public List<Integer> getDeletedPhotoIds() {
+        return deletedPhotoIds;
+    }
+
+    public void setDeletedPhotoIds(List<Integer> deletedPhotoIds) {
+        this.deletedPhotoIds = deletedPhotoIds;
+    }
+
+    public List<Integer> getDeletedTimelineIds() {
+        return deletedTimelineIds;
+    }
+
+    public void setDeletedTimelineIds(List<Integer> deletedTimelineIds) {
+        this.deletedTimelineIds = deletedTimelineIds;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
@@ -7,6 +7,8 @@ public class Timeline {
     private String description;
     private String imgUrl;
     private String icon;
+    // Bumped by every update; an update naming a version only applies if it is still current
+    private int version;
 
     public Timeline() {
     }
@@ -75,4 +77,12 @@ public class Timeline {
     public void setIcon(String icon) {
         this.icon = icon;
     }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
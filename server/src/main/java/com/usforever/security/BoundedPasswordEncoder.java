@@ -0,0 +1,101 @@
+package com.usforever.security;
+
+import com.usforever.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application's PasswordEncoder: BCrypt, run on a pool of its own.
+ *
+ * A BCrypt hash or check is tens of milliseconds of pure CPU, so a burst of logins run on request
+ * threads could occupy all of them and stall every other request. Here the work runs on one thread
+ * per core with a bounded queue in front. The request thread waits for its result without using
+ * CPU. Once the queue is full, encode and matches throw PasswordHashingBusyException straight away,
+ * which the login and register endpoints answer with 503 and Retry-After.
+ *
+ * Metrics: the pool under "security.password-hashing" (queued, active, ...) and the time each hash
+ * or check takes in "security.password-hashing.duration", tagged by operation.
+ */
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private final PasswordEncoder delegate = new BCryptPasswordEncoder();
+    private final ThreadPoolExecutor pool;
+    private final long retryAfterSeconds;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    public BoundedPasswordEncoder(@Value("${security.password-hashing.threads}") int threads,
+                                  @Value("${security.password-hashing.queue-capacity}") int queueCapacity,
+                                  @Value("${security.password-hashing.retry-after-seconds}") long retryAfterSeconds,
+                                  MeterRegistry meterRegistry){
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hashing-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+        new ExecutorServiceMetrics(pool, "security.password-hashing", List.of()).bindTo(meterRegistry);
+        this.encodeTimer = duration("encode", meterRegistry);
+        this.matchesTimer = duration("matches", meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Only looks at the stored hash's cost factor, no hashing
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    private <T> T run(Timer timer, Callable<T> work){
+        try {
+            return pool.submit(() -> timer.recordCallable(work)).get();
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException(retryAfterSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException){
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static Timer duration(String operation, MeterRegistry meterRegistry){
+        return Timer.builder("security.password-hashing.duration")
+                .description("Time to hash a password or check one against its hash")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
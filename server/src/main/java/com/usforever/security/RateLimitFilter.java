@@ -0,0 +1,139 @@
+package com.usforever.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits sign-in and writes, per client address, with a token bucket per client for each group
+ * of routes: "auth" (login and register, each of which costs a BCrypt round) and "write" (creating,
+ * updating and deleting notes, photos and timeline entries). A client over its limit gets 429 with
+ * Retry-After before anything else runs, including the JWT check.
+ *
+ * The client address is the request's remote address. Behind a reverse proxy that would be the proxy's
+ * for every client, so server.forward-headers-strategy is native: Tomcat replaces it with the address
+ * from X-Forwarded-For, but only when the request comes from a trusted proxy, so a client can't choose
+ * its own bucket by sending the header itself.
+ *
+ * Reads aren't limited, and skip this filter after looking at the method alone. The routes are matched
+ * by plain prefix comparison on the servlet path, which the container has already decoded and
+ * normalized and the security firewall has already vetted, so a limited request costs a few string
+ * comparisons and one compare-and-set, with nothing allocated.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final int STRIPES = 64;
+
+    private final boolean enabled;
+    private final List<Limit> limits;
+
+    public RateLimitFilter(@Value("${rate-limit.enabled}") boolean enabled,
+                           @Value("${rate-limit.auth.capacity}") int authCapacity,
+                           @Value("${rate-limit.auth.refill-per-minute}") int authRefillPerMinute,
+                           @Value("${rate-limit.write.capacity}") int writeCapacity,
+                           @Value("${rate-limit.write.refill-per-minute}") int writeRefillPerMinute,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.limits = List.of(
+                new Limit("auth", List.of(
+                        new Route(HttpMethod.POST, "/api/login"),
+                        new Route(HttpMethod.POST, "/api/register")),
+                        new TokenBuckets(authCapacity, authRefillPerMinute, STRIPES, System::nanoTime), meterRegistry),
+                new Limit("write", List.of(
+                        new Route(null, "/api/notes"),
+                        new Route(null, "/api/photos"),
+                        new Route(null, "/api/timeline")),
+                        new TokenBuckets(writeCapacity, writeRefillPerMinute, STRIPES, System::nanoTime), meterRegistry)
+        );
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String method = request.getMethod();
+        return !(HttpMethod.POST.matches(method) || HttpMethod.PUT.matches(method)
+                || HttpMethod.PATCH.matches(method) || HttpMethod.DELETE.matches(method));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        String path = request.getPathInfo() == null ? request.getServletPath() : request.getServletPath() + request.getPathInfo();
+        for (Limit limit : limits) {
+            if (limit.matches(method, path)) {
+                long waitNanos = limit.buckets.tryAcquire(request.getRemoteAddr());
+                if (waitNanos > 0) {
+                    limit.rejected.increment();
+                    long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+                    // Status and header only: sendError would dispatch to the error page, which costs more than the request we're refusing
+                    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                    response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+                    return;
+                }
+                break;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * A path and everything under it, for one method or, with a null method, any.
+     */
+    private record Route(HttpMethod method, String path) {
+
+        boolean matches(String requestMethod, String requestPath) {
+            if (method != null && !method.matches(requestMethod)) {
+                return false;
+            }
+            return requestPath.startsWith(path)
+                    && (requestPath.length() == path.length() || requestPath.charAt(path.length()) == '/');
+        }
+    }
+
+    private static class Limit {
+
+        final List<Route> routes;
+        final TokenBuckets buckets;
+        final Counter rejected;
+
+        Limit(String name, List<Route> routes, TokenBuckets buckets, MeterRegistry meterRegistry) {
+            this.routes = routes;
+            this.buckets = buckets;
+            this.rejected = Counter.builder("http.rate-limited")
+                    .description("Requests turned away with 429, by route group")
+                    .tag("limit", name)
+                    .register(meterRegistry);
+            Gauge.builder("http.rate-limit.buckets", buckets, TokenBuckets::size)
+                    .description("Clients with a partly used token bucket, by route group")
+                    .tag("limit", name)
+                    .register(meterRegistry);
+        }
+
+        boolean matches(String method, String path) {
+            for (Route route : routes) {
+                if (route.matches(method, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
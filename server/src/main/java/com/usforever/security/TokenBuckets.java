@@ -0,0 +1,119 @@
+package com.usforever.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * One token bucket per client, all with the same capacity and refill rate.
+ *
+ * A bucket is a single AtomicLong holding the time at which it will be full again (the generic cell
+ * rate algorithm, which behaves exactly like a token bucket), so taking a token is one compare-and-set
+ * and a bucket never needs a refill task. A bucket whose time has passed is full, which is the same as
+ * not having one, so idle buckets are dropped: the buckets are split into stripes by client, and the
+ * first request to reach a stripe after the sweep interval removes that stripe's full buckets. A
+ * bucket being swept is marked dead first, and a request that finds a dead bucket starts a new one.
+ */
+class TokenBuckets {
+
+    private static final long DEAD = Long.MIN_VALUE;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final long sweepIntervalNanos;
+    private final LongSupplier nanoClock;
+    private final Stripe[] stripes;
+
+    /**
+     * @param capacity tokens a full bucket holds, that is the burst a client may send at once
+     * @param refillPerMinute tokens added back per minute
+     * @param stripes rounded up to a power of two
+     */
+    TokenBuckets(int capacity, int refillPerMinute, int stripes, LongSupplier nanoClock) {
+        if (capacity < 1 || refillPerMinute < 1) {
+            throw new IllegalArgumentException("capacity and refillPerMinute must be positive");
+        }
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / refillPerMinute;
+        this.toleranceNanos = (capacity - 1) * intervalNanos;
+        // By then every bucket not used since the last sweep is full
+        this.sweepIntervalNanos = Math.max(toleranceNanos + intervalNanos, TimeUnit.SECONDS.toNanos(1));
+        this.nanoClock = nanoClock;
+        this.stripes = new Stripe[Integer.highestOneBit(Math.max(stripes, 1) * 2 - 1)];
+        long now = nanoClock.getAsLong();
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(now + sweepIntervalNanos);
+        }
+    }
+
+    /**
+     * Takes a token from the client's bucket.
+     *
+     * @return 0 if there was one, otherwise the nanoseconds until there will be
+     */
+    long tryAcquire(String client) {
+        long now = nanoClock.getAsLong();
+        int hash = client.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        stripe.sweepIfDue(now);
+        while (true) {
+            AtomicLong bucket = stripe.buckets.get(client);
+            if (bucket == null) {
+                AtomicLong created = new AtomicLong(now);
+                bucket = stripe.buckets.putIfAbsent(client, created);
+                if (bucket == null) {
+                    bucket = created;
+                }
+            }
+            while (true) {
+                long fullAt = bucket.get();
+                if (fullAt == DEAD) {
+                    stripe.buckets.remove(client, bucket);
+                    break;
+                }
+                long start = fullAt - now > 0 ? fullAt : now;
+                long wait = start - now - toleranceNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (bucket.compareAndSet(fullAt, start + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    private class Stripe {
+
+        final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        final AtomicLong nextSweep;
+
+        Stripe(long firstSweep) {
+            this.nextSweep = new AtomicLong(firstSweep);
+        }
+
+        void sweepIfDue(long now) {
+            long next = nextSweep.get();
+            if (now - next < 0 || !nextSweep.compareAndSet(next, now + sweepIntervalNanos)) {
+                return;
+            }
+            for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+                AtomicLong bucket = entry.getValue();
+                long fullAt = bucket.get();
+                // Removing by value too, in case a request has already replaced the dead bucket
+                if (fullAt != DEAD && fullAt - now <= 0 && bucket.compareAndSet(fullAt, DEAD)) {
+                    buckets.remove(entry.getKey(), bucket);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.usforever.security;
+
+import com.usforever.model.User;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+/**
+ * The UserDetails for a signed-in user, carrying the User row it was built from so the login endpoint
+ * can answer with it instead of looking the user up a second time.
+ */
+public class UserModelDetails extends org.springframework.security.core.userdetails.User {
+
+    private final transient User user;
+
+    public UserModelDetails(User user) {
+        super(user.getEmail(), user.getHashedPassword(), List.of(new SimpleGrantedAuthority(user.getRole())));
+        this.user = user;
+    }
+
+    public User getUser() {
+        return user;
+    }
+}
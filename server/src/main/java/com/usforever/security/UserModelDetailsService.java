@@ -1,20 +1,15 @@
 package com.usforever.security;
 
 
-import com.usforever.dao.UserDao;
 import com.usforever.model.User;
+import com.usforever.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Authenticate a user from the database.
  */
@@ -22,31 +17,21 @@ import java.util.List;
 public class UserModelDetailsService implements UserDetailsService {
 
     private final Logger log = LoggerFactory.getLogger(UserModelDetailsService.class);
-    private final UserDao userDao;
+    private final UserService userService;
 
-    public UserModelDetailsService(UserDao userDao) {
-        this.userDao = userDao;
+    public UserModelDetailsService(UserService userService) {
+        this.userService = userService;
     }
 
     @Override
     public UserDetails loadUserByUsername(final String login) {
 
         log.debug("Authenticating user '{}'", login);
-        User user = userDao.getUserByEmail(login);
+        User user = userService.getUserByEmail(login);
 
         if(user == null){
             throw new UsernameNotFoundException("User " + login + " not found");
         }
-        return createSpringSecurityUser(login, user);
-    }
-
-    private org.springframework.security.core.userdetails.User createSpringSecurityUser(String login, User user) {
-
-        List<GrantedAuthority> grantedAuthorities = new ArrayList<>();
-        grantedAuthorities.add(new SimpleGrantedAuthority(user.getRole()));
-
-        return new org.springframework.security.core.userdetails.User(user.getEmail(),
-                user.getHashedPassword(),
-                grantedAuthorities);
+        return new UserModelDetails(user);
     }
 }
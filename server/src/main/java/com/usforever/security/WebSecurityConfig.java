@@ -2,6 +2,7 @@ package com.usforever.security;
 
 import com.usforever.security.jwt.JwtFilter;
 import com.usforever.security.jwt.TokenProvider;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -10,43 +11,79 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 public class WebSecurityConfig {
 
+    /**
+     * Routes that anyone may call, signed in or not. JwtFilter skips token parsing for these, so
+     * nothing behind them may depend on who the caller is.
+     */
+    public static final RequestMatcher PUBLIC_ROUTES = new OrRequestMatcher(
+            PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.POST, "/api/login"),
+            PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.POST, "/api/register"),
+            PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.POST, "/api/refresh"),
+            PathPatternRequestMatcher.withDefaults().matcher("/api/notes/**"),
+            PathPatternRequestMatcher.withDefaults().matcher("/api/photos/**"),
+            PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.GET, "/api/changes/stream"),
+            PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.GET, "/api/media/**"),
+            PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.GET, "/api/search"),
+            PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.GET, "/api/stats"),
+            PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.GET, "/api/sync"),
+            PathPatternRequestMatcher.withDefaults().matcher("/api/timeline/**")
+    );
+
     private final TokenProvider tokenProvider;
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
     private final JwtAccessDeniedHandler jwtAccessDeniedHandler;
     private final UserModelDetailsService userModelDetailsService;
     private final JwtFilter jwtFilter;
+    private final RateLimitFilter rateLimitFilter;
 
     public WebSecurityConfig(
             TokenProvider tokenProvider,
             JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
             JwtAccessDeniedHandler jwtAccessDeniedHandler,
             UserModelDetailsService userModelDetailsService,
-            JwtFilter jwtFilter
+            JwtFilter jwtFilter,
+            RateLimitFilter rateLimitFilter
     ) {
         this.tokenProvider = tokenProvider;
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
         this.jwtAccessDeniedHandler = jwtAccessDeniedHandler;
         this.userModelDetailsService = userModelDetailsService;
         this.jwtFilter = jwtFilter;
+        this.rateLimitFilter = rateLimitFilter;
+    }
+
+    /**
+     * JwtFilter is a bean so it can be added to the security filter chain below; stop Spring Boot
+     * from also registering it as a plain servlet filter, which would run it a second time
+     * @return
+     */
+    @Bean
+    public FilterRegistrationBean<JwtFilter> jwtFilterRegistration() {
+        FilterRegistrationBean<JwtFilter> registration = new FilterRegistrationBean<>(jwtFilter);
+        registration.setEnabled(false);
+        return registration;
     }
 
     /**
-     * Needed when authentication provider compares passwords
+     * Likewise for RateLimitFilter
      * @return
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration() {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
     }
 
     /**
@@ -90,7 +127,10 @@ public class WebSecurityConfig {
                 })
 
                 // Add the JWT filter
-                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+
+                // Turn away clients over their rate limit before spending anything on them
+                .addFilterBefore(rateLimitFilter, JwtFilter.class);
 
         return httpSecurity.build();
     }
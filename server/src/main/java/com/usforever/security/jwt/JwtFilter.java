@@ -1,53 +1,68 @@
 package com.usforever.security.jwt;
 
+import com.usforever.security.WebSecurityConfig;
+import com.usforever.service.TokenRevocationService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.ServletRequest;
-import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
-import org.springframework.web.filter.GenericFilterBean;
+import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
 /**
  * Filters incoming requests and installs a Spring Security principal if a header corresponding to a valid user is
  * found.
+ *
+ * Requests to {@link WebSecurityConfig#PUBLIC_ROUTES} don't look at the token at all. A token that was
+ * revoked at logout is treated as no token; that check is made in memory, see {@link TokenRevocationService}.
  */
 @Component
-public class JwtFilter extends GenericFilterBean {
+public class JwtFilter extends OncePerRequestFilter {
 
     private static final Logger LOG = LoggerFactory.getLogger(JwtFilter.class);
     public static final String AUTHORIZATION_HEADER = "Authorization";
 
     private TokenProvider tokenProvider;
+    private final TokenRevocationService tokenRevocationService;
 
-    public JwtFilter(TokenProvider tokenProvider) {
+    public JwtFilter(TokenProvider tokenProvider, TokenRevocationService tokenRevocationService) {
         this.tokenProvider = tokenProvider;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
-    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
-            throws IOException, ServletException {
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return WebSecurityConfig.PUBLIC_ROUTES.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
 
-        HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
-        String jwt = resolveToken(httpServletRequest);
-        String requestURI = httpServletRequest.getRequestURI();
+        String jwt = resolveToken(request);
+        String requestURI = request.getRequestURI();
 
-        if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-            Authentication authentication = tokenProvider.getAuthentication(jwt);
+        Authentication authentication = StringUtils.hasText(jwt) ? tokenProvider.resolveAuthentication(jwt) : null;
+        TokenProvider.TokenId tokenId = TokenProvider.getTokenId(authentication);
+        if (tokenId != null && tokenRevocationService.isRevoked(tokenId.id())) {
+            LOG.debug("revoked JWT token for '{}', uri: {}", authentication.getName(), requestURI);
+            authentication = null;
+        }
+        if (authentication != null) {
             SecurityContextHolder.getContext().setAuthentication(authentication);
             LOG.debug("set Authentication to com.techelevator.security context for '{}', uri: {}", authentication.getName(), requestURI);
         } else {
             LOG.debug("no valid JWT token found, uri: {}", requestURI);
         }
 
-        filterChain.doFilter(servletRequest, servletResponse);
+        filterChain.doFilter(request, response);
     }
 
     private String resolveToken(HttpServletRequest request) {
@@ -1,8 +1,15 @@
 package com.usforever.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -14,10 +21,21 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Creates and verifies JWTs.
+ *
+ * Every verification is counted in "jwt.validations", tagged with its outcome (valid, expired,
+ * invalid_signature, ...), and the signature check itself is timed in "jwt.verification".
+ */
 @Component
 public class TokenProvider implements InitializingBean {
 
@@ -28,23 +46,58 @@ public class TokenProvider implements InitializingBean {
     private final String base64Secret;
     private final long tokenValidityInMilliseconds;
     private final long tokenValidityInMillisecondsForRememberMe;
+    private final long verifiedTokenCacheSize;
+    private final MeterRegistry meterRegistry;
+    private final Timer verificationTimer;
+    private final Counter valid;
+    private final Counter invalidSignature;
+    private final Counter malformed;
+    private final Counter expired;
+    private final Counter unsupported;
+    private final Counter illegalArgument;
 
-    private Key key;
+    private SecretKey key;
+    private JwtParser parser;
+    private Cache<ByteBuffer, VerifiedToken> verifiedTokens;
 
 
     public TokenProvider(
             @Value("${jwt.base64-secret}") String base64Secret,
             @Value("${jwt.token-validity-in-seconds}") long tokenValidityInSeconds,
-            @Value("${jwt.token-validity-in-seconds-for-remember-me}") long tokenValidityInSecondsForRememberMe) {
+            @Value("${jwt.token-validity-in-seconds-for-remember-me}") long tokenValidityInSecondsForRememberMe,
+            @Value("${jwt.verified-token-cache-size}") long verifiedTokenCacheSize,
+            MeterRegistry meterRegistry) {
         this.base64Secret = base64Secret;
         this.tokenValidityInMilliseconds = tokenValidityInSeconds * 1000;
         this.tokenValidityInMillisecondsForRememberMe = tokenValidityInSecondsForRememberMe * 1000;
+        this.verifiedTokenCacheSize = verifiedTokenCacheSize;
+        this.meterRegistry = meterRegistry;
+        this.verificationTimer = Timer.builder("jwt.verification")
+                .description("Time to parse a JWT and check its signature")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.valid = validations("valid");
+        this.invalidSignature = validations("invalid_signature");
+        this.malformed = validations("malformed");
+        this.expired = validations("expired");
+        this.unsupported = validations("unsupported");
+        this.illegalArgument = validations("illegal_argument");
     }
 
     @Override
     public void afterPropertiesSet() {
         byte[] keyBytes = Decoders.BASE64.decode(base64Secret);
         this.key = Keys.hmacShaKeyFor(keyBytes);
+        // The parser is immutable and thread-safe, so one instance serves every request
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedTokenCacheSize)
+                .expireAfter(new UntilTokenExpires())
+                .recordStats()
+                .build();
+        // Same tag keys as the CacheManager's caches, which Prometheus needs for meters sharing a name
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified-tokens",
+                "cache.manager", "tokenProvider", "name", "jwt.verified-tokens");
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
@@ -66,47 +119,152 @@ public class TokenProvider implements InitializingBean {
         }
 
         return Jwts.builder()
-                .setSubject(authentication.getName())
+                // A unique id, so that this one token can be revoked at logout
+                .id(UUID.randomUUID().toString())
+                .subject(authentication.getName())
                 .claim(AUTHORITIES_KEY, authorities)
-                .signWith(key, SignatureAlgorithm.HS512)
-                .setExpiration(validity)
+                .signWith(key, Jwts.SIG.HS512)
+                .expiration(validity)
                 .compact();
     }
 
-    public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        Collection<? extends GrantedAuthority> authorities =
-                Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList());
+    /**
+     * Returns the Authentication for a token, or null if the token is not valid.
+     *
+     * The signature is checked once per token: the verified claims are cached under a SHA-256 digest
+     * of the token until the token's own expiry, so later requests carrying the same token skip parsing
+     * and the HMAC entirely. Invalid tokens are never cached. Each call gets an Authentication of its
+     * own, since the request it goes to may change it (details, credentials).
+     */
+    public Authentication resolveAuthentication(String token) {
+        ByteBuffer digest = digest(token);
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        if (verified == null) {
+            Claims claims = parseClaims(token);
+            if (claims == null) {
+                return null;
+            }
+            verified = VerifiedToken.of(claims);
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(digest, verified);
+            }
+        }
+        return verified.toAuthentication(token);
+    }
 
-        User principal = new User(claims.getSubject(), "", authorities);
+    /**
+     * Verifies the token and builds its Authentication in a single parse, without using the cache.
+     *
+     * @throws JwtException if the token is not valid
+     */
+    public Authentication getAuthentication(String token) {
+        return VerifiedToken.of(parser.parseSignedClaims(token).getPayload()).toAuthentication(token);
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    /**
+     * The id and expiry of the token an Authentication from this provider was built from, or null if the
+     * token had no id.
+     */
+    public static TokenId getTokenId(Authentication authentication) {
+        return authentication != null && authentication.getDetails() instanceof TokenId tokenId ? tokenId : null;
     }
 
     public boolean validateToken(String authToken) {
+        return parseClaims(authToken) != null;
+    }
+
+    private Claims parseClaims(String authToken) {
+        long start = System.nanoTime();
         try {
-            Jwts.parser().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
-        } catch (io.jsonwebtoken.security.SecurityException | MalformedJwtException e) {
-            log.info("Invalid JWT signature.");
+            Claims claims = parser.parseSignedClaims(authToken).getPayload();
+            valid.increment();
+            return claims;
+        } catch (io.jsonwebtoken.security.SecurityException e) {
+            invalidSignature.increment();
             log.trace("Invalid JWT signature trace: {}", e);
+        } catch (MalformedJwtException e) {
+            malformed.increment();
+            log.trace("Malformed JWT token trace: {}", e);
         } catch (ExpiredJwtException e) {
-            log.info("Expired JWT token.");
+            expired.increment();
             log.trace("Expired JWT token trace: {}", e);
         } catch (UnsupportedJwtException e) {
-            log.info("Unsupported JWT token.");
+            unsupported.increment();
             log.trace("Unsupported JWT token trace: {}", e);
         } catch (IllegalArgumentException e) {
-            log.info("JWT token compact of handler are invalid.");
+            illegalArgument.increment();
             log.trace("JWT token compact of handler are invalid trace: {}", e);
+        } finally {
+            verificationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return null;
+    }
+
+    private Counter validations(String outcome) {
+        return Counter.builder("jwt.validations")
+                .description("JWTs checked, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            // ByteBuffer compares by content, so the raw digest works as a map key without encoding it
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public record TokenId(String id, Instant expiresAt) { }
+
+    /**
+     * What a token says once its signature has been checked. Immutable, so one can be shared by every
+     * request carrying the token.
+     *
+     * @param tokenId null if the token has no id or no expiry
+     */
+    private record VerifiedToken(String subject, List<GrantedAuthority> authorities, TokenId tokenId,
+                                 long expiresAtMillis) {
+
+        static VerifiedToken of(Claims claims) {
+            List<GrantedAuthority> authorities = Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
+                    .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                    .toList();
+            Date expiration = claims.getExpiration();
+            TokenId tokenId = claims.getId() != null && expiration != null
+                    ? new TokenId(claims.getId(), expiration.toInstant()) : null;
+            return new VerifiedToken(claims.getSubject(), authorities, tokenId,
+                    expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+        }
+
+        Authentication toAuthentication(String token) {
+            User principal = new User(subject, "", authorities);
+            UsernamePasswordAuthenticationToken authentication =
+                    new UsernamePasswordAuthenticationToken(principal, token, authorities);
+            if (tokenId != null) {
+                authentication.setDetails(tokenId);
+            }
+            return authentication;
+        }
+    }
+
+    private static class UntilTokenExpires implements Expiry<ByteBuffer, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer key, VerifiedToken value, long currentTime) {
+            long remainingMillis = value.expiresAtMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
         }
-        return false;
     }
 }
@@ -0,0 +1,163 @@
+package com.usforever.service;
+
+import com.usforever.dao.ChangeDao;
+import com.usforever.dao.PgNotificationListener;
+import com.usforever.dao.TableVersions;
+import com.usforever.model.ChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Tells subscribers about every write to notes, photos and timeline, whichever server instance made it.
+ *
+ * The services publish an event after each successful write. It goes to this instance's subscribers
+ * straight away and out through Postgres NOTIFY to the other instances, whose listeners hand it back
+ * here. Events carry the id of the instance that sent them, so an instance ignores its own. An event
+ * from another instance is first applied to this instance's caches (the table version is bumped and
+ * the owning service drops what it holds for the ids) and then passed on to subscribers.
+ *
+ * If the listening connection drops, whatever was sent meanwhile is lost, so on reconnect every table
+ * is treated as changed and subscribers get a RESET event per table.
+ */
+@Component
+public class ChangeFeed implements PgNotificationListener.Handler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeFeed.class);
+
+    // NOTIFY payloads must stay under 8000 bytes; this many ids leaves plenty of room
+    private static final int MAX_IDS_PER_EVENT = 500;
+
+    private final String origin = UUID.randomUUID().toString();
+    private final ChangeDao changeDao;
+    private final TableVersions tableVersions;
+    private final ContentAggregates aggregates;
+    private final JsonMapper jsonMapper;
+    private final List<Consumer<ChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<TableVersions.Table, Consumer<ChangeEvent>> remoteHandlers = new EnumMap<>(TableVersions.Table.class);
+
+    public ChangeFeed(ChangeDao changeDao, TableVersions tableVersions, ContentAggregates aggregates,
+                      JsonMapper jsonMapper, PgNotificationListener listener){
+        this.changeDao = changeDao;
+        this.tableVersions = tableVersions;
+        this.aggregates = aggregates;
+        this.jsonMapper = jsonMapper;
+        listener.addHandler(this);
+    }
+
+    /**
+     * Adds a subscriber, which is called on the publishing thread and so must not block.
+     *
+     * @return a Runnable that removes the subscriber again
+     */
+    public Runnable subscribe(Consumer<ChangeEvent> subscriber){
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * Announces a write this instance has made. Failing to notify other instances is logged, not
+     * thrown: the write itself has already succeeded.
+     */
+    public void publish(TableVersions.Table table, String type, List<Integer> ids){
+        if (ids.isEmpty()){
+            return;
+        }
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_EVENT){
+            List<Integer> chunk = List.copyOf(ids.subList(from, Math.min(from + MAX_IDS_PER_EVENT, ids.size())));
+            ChangeEvent event = new ChangeEvent(tableName(table), type, chunk);
+            deliver(event);
+            try {
+                changeDao.notifyChange(jsonMapper.writeValueAsString(new Envelope(origin, event)));
+            } catch (RuntimeException e){
+                LOG.warn("Could not notify other instances of {} {}", type, event.getTable(), e);
+            }
+        }
+    }
+
+    /**
+     * Registers how the service owning a table applies another instance's write to its own caches.
+     * The handler also gets the RESET events sent after a reconnect.
+     */
+    void onRemoteChange(TableVersions.Table table, Consumer<ChangeEvent> handler){
+        synchronized (remoteHandlers){
+            remoteHandlers.put(table, handler);
+        }
+    }
+
+    @Override
+    public void onNotifications(List<String> payloads) {
+        for (String payload : payloads){
+            Envelope envelope;
+            try {
+                envelope = jsonMapper.readValue(payload, Envelope.class);
+            } catch (JacksonException e){
+                LOG.warn("Ignoring unreadable change notification {}", payload, e);
+                continue;
+            }
+            if (origin.equals(envelope.origin()) || envelope.event() == null){
+                continue;
+            }
+            TableVersions.Table table = tableOf(envelope.event().getTable());
+            if (table == null){
+                LOG.warn("Ignoring change notification for unknown table {}", envelope.event().getTable());
+                continue;
+            }
+            tableVersions.bump(table);
+            handlerFor(table).accept(envelope.event());
+            deliver(envelope.event());
+        }
+    }
+
+    @Override
+    public void onReconnect() {
+        for (TableVersions.Table table : TableVersions.Table.values()){
+            ChangeEvent reset = new ChangeEvent(tableName(table), ChangeEvent.RESET, List.of());
+            tableVersions.bump(table);
+            handlerFor(table).accept(reset);
+            deliver(reset);
+        }
+        aggregates.rebuild();
+    }
+
+    private void deliver(ChangeEvent event){
+        for (Consumer<ChangeEvent> subscriber : subscribers){
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e){
+                LOG.warn("Change subscriber failed", e);
+            }
+        }
+    }
+
+    private Consumer<ChangeEvent> handlerFor(TableVersions.Table table){
+        synchronized (remoteHandlers){
+            return remoteHandlers.getOrDefault(table, event -> { });
+        }
+    }
+
+    private static String tableName(TableVersions.Table table){
+        return table.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static TableVersions.Table tableOf(String name){
+        for (TableVersions.Table table : TableVersions.Table.values()){
+            if (tableName(table).equals(name)){
+                return table;
+            }
+        }
+        return null;
+    }
+
+    private record Envelope(String origin, ChangeEvent event) { }
+}
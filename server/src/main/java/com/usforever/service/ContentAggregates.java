@@ -0,0 +1,257 @@
+package com.usforever.service;
+
+import com.usforever.dao.NoteDao;
+import com.usforever.dao.PhotoDao;
+import com.usforever.dao.TimelineDao;
+import com.usforever.model.CategoryCount;
+import com.usforever.model.Note;
+import com.usforever.model.Photo;
+import com.usforever.model.Stats;
+import com.usforever.model.Timeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts over the photos, notes and timeline, kept in memory so /api/photos/categories and
+ * /api/stats never scan a table.
+ *
+ * They are built from the database once, before the server takes requests, and from then on the
+ * Rest*Services report every create, update and delete here. Each row's contribution is remembered
+ * by id, so a delete or an update takes back exactly what the row added. Writes made straight to the
+ * database are not seen until the next rebuild.
+ *
+ * Categories are counted case-insensitively, as the category endpoint matches them, so "Wedding" and
+ * "wedding" are one facet, shown with whichever spelling most of its photos use.
+ *
+ * Writers take the lock and then publish a fresh immutable snapshot; readers only read the snapshot.
+ */
+@Component
+public class ContentAggregates implements SmartInitializingSingleton {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContentAggregates.class);
+
+    // Timeline dates are free text ("Nov 08, 2015"); these are the shapes we can read a date from
+    private static final List<DateTimeFormatter> TIMELINE_DATE_FORMATS = List.of(
+            formatter("MMM d, uuuu"),
+            formatter("MMMM d, uuuu"),
+            formatter("MMM d uuuu"),
+            formatter("MMMM d uuuu"),
+            formatter("uuuu-MM-dd"),
+            formatter("M/d/uuuu"));
+
+    private final PhotoDao photoDao;
+    private final NoteDao noteDao;
+    private final TimelineDao timelineDao;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Each photo's category as written; counts are by its lower-cased key
+    private final Map<Integer, String> photoCategories = new HashMap<>();
+    private final Map<String, Integer> categoryCounts = new TreeMap<>();
+    // Photos per spelling, by key
+    private final Map<String, Map<String, Integer>> categorySpellings = new HashMap<>();
+    private final Map<Integer, YearMonth> noteMonths = new HashMap<>();
+    private final Map<YearMonth, Integer> monthCounts = new TreeMap<>();
+    // Values are null for entries whose date couldn't be read
+    private final Map<Integer, LocalDate> timelineDates = new HashMap<>();
+    private final TreeMap<LocalDate, Integer> dateCounts = new TreeMap<>();
+
+    private volatile Snapshot snapshot = new Snapshot(List.of(), new Stats(0, 0, Map.of(), 0, null, null));
+
+    public ContentAggregates(PhotoDao photoDao, NoteDao noteDao, TimelineDao timelineDao){
+        this.photoDao = photoDao;
+        this.noteDao = noteDao;
+        this.timelineDao = timelineDao;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Recounts everything from the database.
+     */
+    public void rebuild(){
+        lock.lock();
+        try {
+            photoCategories.clear();
+            categoryCounts.clear();
+            categorySpellings.clear();
+            noteMonths.clear();
+            monthCounts.clear();
+            timelineDates.clear();
+            dateCounts.clear();
+            photoDao.streamAllPhotos(this::addPhoto);
+            noteDao.streamAllNotes(this::addNote);
+            timelineDao.streamAllTimeline(this::putTimeline);
+            publish();
+            LOG.info("Counted {} photos, {} notes and {} timeline entries", photoCategories.size(), noteMonths.size(), timelineDates.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<CategoryCount> getCategoryCounts(){
+        return snapshot.categories();
+    }
+
+    public Stats getStats(){
+        return snapshot.stats();
+    }
+
+    public void photosAdded(Collection<Photo> photos){
+        update(() -> photos.forEach(this::addPhoto));
+    }
+
+    public void photosRemoved(Collection<Integer> ids){
+        update(() -> ids.forEach(id -> removeCategory(photoCategories.remove(id))));
+    }
+
+    public void notesAdded(Collection<Note> notes){
+        update(() -> notes.forEach(this::addNote));
+    }
+
+    public void notesRemoved(Collection<Integer> ids){
+        update(() -> ids.forEach(id -> decrement(monthCounts, noteMonths.remove(id))));
+    }
+
+    /**
+     * Records created or updated timeline entries; an update replaces the entry's old date.
+     */
+    public void timelineSaved(Collection<Timeline> timelines){
+        update(() -> timelines.forEach(this::putTimeline));
+    }
+
+    public void timelineRemoved(Collection<Integer> ids){
+        update(() -> ids.forEach(id -> decrement(dateCounts, timelineDates.remove(id))));
+    }
+
+    private void update(Runnable change){
+        lock.lock();
+        try {
+            change.run();
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The methods below are called with the lock held
+
+    private void addPhoto(Photo photo){
+        removeCategory(photoCategories.put(photo.getId(), photo.getCategory()));
+        if (photo.getCategory() != null){
+            String key = categoryKey(photo.getCategory());
+            increment(categoryCounts, key);
+            increment(categorySpellings.computeIfAbsent(key, k -> new TreeMap<>()), photo.getCategory());
+        }
+    }
+
+    private void removeCategory(String category){
+        if (category == null){
+            return;
+        }
+        String key = categoryKey(category);
+        decrement(categoryCounts, key);
+        Map<String, Integer> spellings = categorySpellings.get(key);
+        if (spellings != null){
+            decrement(spellings, category);
+            if (spellings.isEmpty()){
+                categorySpellings.remove(key);
+            }
+        }
+    }
+
+    // As the category query compares them: category_key = lower(?)
+    private static String categoryKey(String category){
+        return category.toLowerCase(Locale.ROOT);
+    }
+
+    private void addNote(Note note){
+        YearMonth month = note.getCreatedAt() == null ? null : YearMonth.from(note.getCreatedAt());
+        decrement(monthCounts, noteMonths.put(note.getId(), month));
+        increment(monthCounts, month);
+    }
+
+    private void putTimeline(Timeline timeline){
+        LocalDate date = parseDate(timeline.getDate());
+        decrement(dateCounts, timelineDates.put(timeline.getId(), date));
+        increment(dateCounts, date);
+    }
+
+    private void publish(){
+        List<CategoryCount> categories = new ArrayList<>(categoryCounts.size());
+        categoryCounts.forEach((key, count) -> categories.add(new CategoryCount(displayName(key), count)));
+        Map<String, Integer> notesPerMonth = new LinkedHashMap<>();
+        monthCounts.forEach((month, count) -> notesPerMonth.put(month.toString(), count));
+        Stats stats = new Stats(photoCategories.size(), noteMonths.size(), Collections.unmodifiableMap(notesPerMonth),
+                timelineDates.size(),
+                dateCounts.isEmpty() ? null : dateCounts.firstKey(),
+                dateCounts.isEmpty() ? null : dateCounts.lastKey());
+        snapshot = new Snapshot(Collections.unmodifiableList(categories), stats);
+    }
+
+    // The spelling most photos in the category use; ties go to the first in sort order
+    private String displayName(String key){
+        String name = key;
+        int most = 0;
+        for (Map.Entry<String, Integer> spelling : categorySpellings.getOrDefault(key, Map.of()).entrySet()){
+            if (spelling.getValue() > most){
+                name = spelling.getKey();
+                most = spelling.getValue();
+            }
+        }
+        return name;
+    }
+
+    private static <K> void increment(Map<K, Integer> counts, K key){
+        if (key != null){
+            counts.merge(key, 1, Integer::sum);
+        }
+    }
+
+    private static <K> void decrement(Map<K, Integer> counts, K key){
+        if (key != null){
+            counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    static LocalDate parseDate(String text){
+        if (text == null){
+            return null;
+        }
+        String trimmed = text.trim();
+        for (DateTimeFormatter format : TIMELINE_DATE_FORMATS){
+            try {
+                return LocalDate.parse(trimmed, format);
+            } catch (DateTimeParseException e){
+                // try the next shape
+            }
+        }
+        return null;
+    }
+
+    private static DateTimeFormatter formatter(String pattern){
+        return new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern(pattern).toFormatter(Locale.US);
+    }
+
+    private record Snapshot(List<CategoryCount> categories, Stats stats) { }
+}
@@ -0,0 +1,127 @@
+package com.usforever.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps small, often requested media files (thumbnails, mostly) in direct ByteBuffers, so serving
+ * them reads no file and their bytes never sit on the Java heap.
+ *
+ * Entries are evicted least recently used first once their total size would pass the capacity.
+ * Stored files never change, so an entry never goes stale. The map is guarded by a ReentrantLock
+ * rather than synchronized, which would pin a virtual thread to its carrier while it waits, and
+ * files are read outside the lock; two requests missing on the same file at once may both read it.
+ */
+@Component
+public class HotMediaCache {
+
+    private final long capacityBytes;
+    private final long maxEntryBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private long sizeBytes;
+
+    public HotMediaCache(@Value("${media.hot-cache.capacity-bytes}") long capacityBytes,
+                         @Value("${media.hot-cache.max-entry-bytes}") long maxEntryBytes,
+                         MeterRegistry meterRegistry){
+        this.capacityBytes = capacityBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, capacityBytes);
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        Gauge.builder("media.hot-cache.size", this, HotMediaCache::sizeBytes)
+                .description("Bytes of media held off-heap")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isCacheable(long fileSize){
+        return fileSize <= maxEntryBytes;
+    }
+
+    /**
+     * Returns the file's bytes as a read-only buffer of its own, loading them on a miss. Only call
+     * this for files that are {@link #isCacheable cacheable}.
+     */
+    public ByteBuffer get(String name, Path path) throws IOException {
+        ByteBuffer cached;
+        lock.lock();
+        try {
+            cached = entries.get(name);
+        } finally {
+            lock.unlock();
+        }
+        if (cached != null){
+            hits.increment();
+            return cached.duplicate();
+        }
+        misses.increment();
+
+        ByteBuffer loaded = load(path);
+        lock.lock();
+        try {
+            ByteBuffer raced = entries.putIfAbsent(name, loaded);
+            if (raced != null){
+                return raced.duplicate();
+            }
+            sizeBytes += loaded.capacity();
+            evictOverCapacity();
+        } finally {
+            lock.unlock();
+        }
+        return loaded.duplicate();
+    }
+
+    private ByteBuffer load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long size = channel.size();
+            if (size > maxEntryBytes){
+                throw new IllegalArgumentException(path + " is too large to cache");
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0){
+                // read until the buffer is full
+            }
+            return buffer.flip().asReadOnlyBuffer();
+        }
+    }
+
+    // Called with the lock held
+    private void evictOverCapacity(){
+        Iterator<Map.Entry<String, ByteBuffer>> eldestFirst = entries.entrySet().iterator();
+        while (sizeBytes > capacityBytes && eldestFirst.hasNext()){
+            sizeBytes -= eldestFirst.next().getValue().capacity();
+            eldestFirst.remove();
+        }
+    }
+
+    private double sizeBytes(){
+        lock.lock();
+        try {
+            return sizeBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result){
+        return Counter.builder("media.hot-cache.requests")
+                .description("Media requests for cacheable files, by whether the file was already cached")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,194 @@
+package com.usforever.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the resized copies of an uploaded image that the gallery shows instead of the original: a
+ * medium copy for the lightbox, a thumbnail for the grid, and a tiny placeholder that is inlined as
+ * a data URI and shown blurred while the thumbnail loads.
+ *
+ * Decoding a full-size photo takes tens of megabytes, so the work runs on a small fixed pool with a
+ * bounded queue; once the queue is full, create() throws RejectedExecutionException rather than
+ * letting uploads pile up in memory.
+ */
+@Component
+public class ImageDerivatives implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImageDerivatives.class);
+
+    // Longest side, in pixels
+    static final int MEDIUM_SIZE = 1280;
+    static final int THUMBNAIL_SIZE = 400;
+    static final int PLACEHOLDER_SIZE = 16;
+
+    private final MediaStorage mediaStorage;
+    private final ThreadPoolExecutor pool;
+
+    public ImageDerivatives(MediaStorage mediaStorage,
+                            @Value("${media.derivative-threads}") int threads,
+                            @Value("${media.derivative-queue-capacity}") int queueCapacity,
+                            MeterRegistry meterRegistry){
+        this.mediaStorage = mediaStorage;
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("media-derivatives-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(pool, "media.derivatives", List.of()).bindTo(meterRegistry);
+    }
+
+    /**
+     * File names of the stored derivatives, and the placeholder as a data URI.
+     */
+    public record Derivatives(String medium, String thumbnail, String placeholder) { }
+
+    /**
+     * Makes the derivatives of a stored image and waits for them. Returns null if the image can't be
+     * decoded (ImageIO has no WebP reader, for one), in which case the original is all there is.
+     *
+     * @throws RejectedExecutionException if too many images are already waiting
+     */
+    public Derivatives create(String originalName) throws IOException {
+        try {
+            return pool.submit(() -> generate(originalName)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resizing " + originalName, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io){
+                throw io;
+            }
+            throw new IOException("Could not resize " + originalName, e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    private Derivatives generate(String originalName) throws IOException {
+        String hash = originalName.substring(0, originalName.lastIndexOf('.'));
+        String mediumName = hash + "-medium.jpg";
+        String thumbnailName = hash + "-thumb.jpg";
+
+        try {
+            BufferedImage thumbnail;
+            if (mediaStorage.exists(mediumName) && mediaStorage.exists(thumbnailName)){
+                // Already uploaded once; only the placeholder, which isn't stored, has to be remade
+                thumbnail = read(mediaStorage.resolve(thumbnailName), THUMBNAIL_SIZE);
+            } else {
+                BufferedImage source = read(mediaStorage.resolve(originalName), MEDIUM_SIZE);
+                if (source == null){
+                    return null;
+                }
+                // Each step shrinks the one before it, which is cheaper and looks better than
+                // scaling the full image down to every size
+                BufferedImage medium = scale(source, MEDIUM_SIZE);
+                thumbnail = scale(medium, THUMBNAIL_SIZE);
+                mediaStorage.storeDerived(mediumName, jpeg(medium, 0.82f));
+                mediaStorage.storeDerived(thumbnailName, jpeg(thumbnail, 0.8f));
+            }
+            if (thumbnail == null){
+                return null;
+            }
+            String placeholder = "data:image/jpeg;base64," +
+                    Base64.getEncoder().encodeToString(jpeg(scale(thumbnail, PLACEHOLDER_SIZE), 0.5f));
+            return new Derivatives(mediumName, thumbnailName, placeholder);
+        } catch (IIOException e){
+            // e.g. a CMYK JPEG, which ImageIO can't decode
+            LOG.warn("Could not decode {}, serving the original only", originalName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes an image, or returns null if no reader understands it. Rows and columns are skipped
+     * while decoding when the image is much larger than needed, so a 12-megapixel photo never has to
+     * be held at full size just to make a 1280 pixel copy.
+     */
+    private static BufferedImage read(Path path, int atLeast) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())){
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()){
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longest / atLeast);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int maxSize){
+        double factor = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+
+        // Always redraw into plain RGB: JPEG has no alpha, so transparent areas become white
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static byte[] jpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)){
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,157 @@
+package com.usforever.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Uploaded media on the local filesystem, stored content-addressed.
+ *
+ * A file is named after the SHA-256 of its bytes, so uploading the same photo twice stores it once,
+ * and a stored file never changes. Files derived from an original (thumbnails and the like) share its
+ * hash with a suffix, e.g. "&lt;sha&gt;-thumb.jpg". Uploads are written to an incoming directory first
+ * and renamed into place once complete, so a half-written file is never visible under its final name.
+ */
+@Component
+public class MediaStorage {
+
+    public static final String URL_PREFIX = "/api/media/";
+
+    // Only these types are accepted, and the content type alone decides the stored extension
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp",
+            "video/mp4", "mp4",
+            "video/webm", "webm",
+            "video/quicktime", "mov");
+    private static final Pattern FILE_NAME = Pattern.compile("[0-9a-f]{64}(-[a-z]+)?\\.[a-z0-9]+");
+
+    private final Path files;
+    private final Path incoming;
+
+    public MediaStorage(@Value("${media.storage-dir}") String storageDir) throws IOException {
+        Path root = Paths.get(storageDir).toAbsolutePath().normalize();
+        this.files = Files.createDirectories(root.resolve("files"));
+        this.incoming = Files.createDirectories(root.resolve("incoming"));
+    }
+
+    public static boolean isSupported(String contentType){
+        return contentType != null && EXTENSIONS.containsKey(contentType);
+    }
+
+    public static boolean isImage(String contentType){
+        return isSupported(contentType) && contentType.startsWith("image/");
+    }
+
+    /**
+     * The content type a stored file was uploaded as, going by its extension.
+     */
+    public static String contentTypeOf(String name){
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        for (Map.Entry<String, String> type : EXTENSIONS.entrySet()){
+            if (type.getValue().equals(extension)){
+                return type.getKey();
+            }
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * Copies content into the store, hashing it on the way through, and returns the stored file's name.
+     * The bytes go from the stream to disk through a small buffer, never all in memory at once.
+     */
+    public String store(InputStream content, String contentType) throws IOException {
+        String extension = EXTENSIONS.get(contentType);
+        if (extension == null){
+            throw new IllegalArgumentException("Unsupported content type " + contentType);
+        }
+        MessageDigest sha256 = sha256();
+        Path upload = incomingFile();
+        try {
+            try (InputStream in = new DigestInputStream(content, sha256)){
+                Files.copy(in, upload);
+            }
+            String name = HexFormat.of().formatHex(sha256.digest()) + "." + extension;
+            moveIntoPlace(upload, name);
+            return name;
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    /**
+     * Stores bytes derived from an original under the given name, unless a file by that name exists.
+     */
+    public void storeDerived(String name, byte[] bytes) throws IOException {
+        if (exists(name)){
+            return;
+        }
+        Path derived = incomingFile();
+        try {
+            Files.write(derived, bytes);
+            moveIntoPlace(derived, name);
+        } finally {
+            Files.deleteIfExists(derived);
+        }
+    }
+
+    public boolean exists(String name){
+        return Files.exists(resolve(name));
+    }
+
+    /**
+     * Returns the path of a stored file. The name must look like one this class produced, so a name
+     * taken from a request can't reach outside the store.
+     */
+    public Path resolve(String name){
+        if (name == null || !FILE_NAME.matcher(name).matches()){
+            throw new IllegalArgumentException("Not a media file name: " + name);
+        }
+        return files.resolve(name);
+    }
+
+    public static String url(String name){
+        return URL_PREFIX + name;
+    }
+
+    private void moveIntoPlace(Path source, String name) throws IOException {
+        Path target = resolve(name);
+        if (Files.exists(target)){
+            // Same name means same bytes; keep the copy we already have
+            return;
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e){
+            // Another upload of the same file got there first
+        }
+    }
+
+    private Path incomingFile(){
+        return incoming.resolve(UUID.randomUUID() + ".part");
+    }
+
+    private static MessageDigest sha256(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -2,16 +2,26 @@ package com.usforever.service;
 
 import com.usforever.model.Note;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface NoteService {
     List<Note> getAllNotes();
 
+    void streamAllNotes(Consumer<Note> consumer);
+
     Note getNoteById(int id);
 
+    List<Note> getNotesByIds(Collection<Integer> ids);
+
     Note createNote(Note newNote);
 
+    List<Note> createNotes(List<Note> newNotes);
+
     Note updateNote(Note updatedNote);
 
     int deleteNote(int id);
+
+    int deleteNotes(Collection<Integer> ids);
 }
@@ -1,13 +1,26 @@
 package com.usforever.service;
 
+import com.usforever.model.CategoryCount;
 import com.usforever.model.Photo;
+import com.usforever.model.PhotoPage;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface PhotoService {
     List<Photo> getAllPhotos();
+    void streamAllPhotos(Consumer<Photo> consumer);
     List<Photo> getAllPhotosByCategory(String category);
+    List<CategoryCount> getCategoryCounts();
+    PhotoPage getPhotoFeed(String seed, String cursor, int limit, String category);
     Photo getPhotoById(int id);
+    List<Photo> getPhotosByIds(Collection<Integer> ids);
     Photo createPhoto(Photo newPhoto);
+    Photo uploadPhoto(String category, String contentType, InputStream content) throws IOException;
+    List<Photo> createPhotos(List<Photo> newPhotos);
     int deletePhoto(int id);
+    int deletePhotos(Collection<Integer> ids);
 }
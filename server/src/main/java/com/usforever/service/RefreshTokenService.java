@@ -0,0 +1,23 @@
+package com.usforever.service;
+
+import com.usforever.model.User;
+
+public interface RefreshTokenService {
+
+    /**
+     * Issues the first refresh token of a new login.
+     */
+    String issueToken(User user);
+
+    /**
+     * Exchanges a refresh token for its successor. Returns null if the token isn't valid.
+     */
+    Rotation rotateToken(String refreshToken);
+
+    /**
+     * Revokes a refresh token along with every other token rotated from the same login.
+     */
+    void revokeToken(String refreshToken);
+
+    record Rotation(User user, String refreshToken) { }
+}
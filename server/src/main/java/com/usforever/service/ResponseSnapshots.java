@@ -0,0 +1,193 @@
+package com.usforever.service;
+
+import com.usforever.dao.TableVersions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The list responses for whole collections, already serialized to JSON and gzipped, so serving one
+ * is a plain byte copy.
+ *
+ * A snapshot is labelled with the table version it was built from and is only handed out while that
+ * version is current. Building happens on a background thread: the services ask for a rebuild after
+ * every write, and a request that finds no current snapshot asks for one too and is answered the
+ * ordinary way in the meantime. Requests for a key already waiting to be rebuilt are coalesced, so a
+ * burst of writes costs one rebuild, not one each.
+ *
+ * Lists that are served in a fresh random order every time are kept as a few differently shuffled
+ * variants, and each request gets one at random.
+ *
+ * Keys come from request paths (categories), so anyone can ask for new ones. A key is only kept once
+ * its list has turned out to have rows, and a kept key that goes unread for the idle time is dropped
+ * at its next rebuild; when all max-keys are taken, the least recently read key makes room. The keys
+ * are only added and removed on the builder thread.
+ */
+@Component
+public class ResponseSnapshots implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseSnapshots.class);
+
+    private final TableVersions tableVersions;
+    private final JsonMapper jsonMapper;
+    private final int maxKeys;
+    private final int shuffledVariants;
+    private final long idleNanos;
+    // The kept keys
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // One thread: rebuilds are rare, and queued work is bounded by the number of keys
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("response-snapshots").daemon().factory());
+
+    public ResponseSnapshots(TableVersions tableVersions, JsonMapper jsonMapper,
+                             @Value("${snapshots.max-keys}") int maxKeys,
+                             @Value("${snapshots.shuffled-variants}") int shuffledVariants,
+                             @Value("${snapshots.idle-seconds}") long idleSeconds){
+        this.tableVersions = tableVersions;
+        this.jsonMapper = jsonMapper;
+        this.maxKeys = maxKeys;
+        this.shuffledVariants = shuffledVariants;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+    }
+
+    /**
+     * One stored response body, as JSON and as gzipped JSON.
+     */
+    public record Body(byte[] json, byte[] gzip) { }
+
+    /**
+     * Returns a body for the key built from the table's current version, or null if there is none
+     * yet, in which case one is built in the background from the loader.
+     *
+     * @param shuffled whether each call to the loader returns the list in a new random order
+     */
+    public Body get(String key, TableVersions.Table table, boolean shuffled, Supplier<? extends List<?>> loader){
+        Source source = sources.get(key);
+        if (source == null){
+            // Not kept (yet): find out in the background whether the list has rows. Bounded, since
+            // every made-up category lands here
+            if (pending.size() < 2 * maxKeys){
+                schedule(key, new Source(table, shuffled ? shuffledVariants : 1, loader, new AtomicLong(System.nanoTime())));
+            }
+            return null;
+        }
+        source.lastRead().set(System.nanoTime());
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.version() == tableVersions.current(table)){
+            List<Body> bodies = snapshot.bodies();
+            return bodies.get(ThreadLocalRandom.current().nextInt(bodies.size()));
+        }
+        schedule(key, source);
+        return null;
+    }
+
+    /**
+     * Rebuilds every snapshot of the table, after a write to it.
+     */
+    public void refresh(TableVersions.Table table){
+        sources.forEach((key, source) -> {
+            if (source.table() == table){
+                schedule(key, source);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        builder.shutdownNow();
+    }
+
+    private void schedule(String key, Source source){
+        if (pending.add(key)){
+            builder.execute(() -> build(key, source));
+        }
+    }
+
+    private void build(String key, Source candidate){
+        // Leave pending first, so a write that lands while we build schedules another rebuild
+        pending.remove(key);
+        Source kept = sources.get(key);
+        Source source = kept != null ? kept : candidate;
+        if (kept != null && System.nanoTime() - kept.lastRead().get() > idleNanos){
+            sources.remove(key);
+            snapshots.remove(key);
+            return;
+        }
+        // Read the version before the data: if a write slips in between, the snapshot is labelled
+        // with the older version and is never served
+        long version = tableVersions.current(source.table());
+        Snapshot existing = snapshots.get(key);
+        if (existing != null && existing.version() == version){
+            return;
+        }
+        try {
+            List<Body> bodies = new ArrayList<>(source.variants());
+            for (int i = 0; i < source.variants(); i++){
+                List<?> list = source.loader().get();
+                if (kept == null && list.isEmpty()){
+                    return;
+                }
+                byte[] json = jsonMapper.writeValueAsBytes(list);
+                bodies.add(new Body(json, gzip(json)));
+            }
+            if (kept == null){
+                keep(key, source);
+            }
+            snapshots.put(key, new Snapshot(version, List.copyOf(bodies)));
+        } catch (RuntimeException e){
+            // The next request for the key will ask again
+            LOG.warn("Could not build the {} snapshot", key, e);
+        }
+    }
+
+    private void keep(String key, Source source){
+        if (sources.size() >= maxKeys){
+            sources.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().lastRead().get()))
+                    .ifPresent(oldest -> {
+                        sources.remove(oldest.getKey());
+                        snapshots.remove(oldest.getKey());
+                    });
+        }
+        sources.put(key, source);
+    }
+
+    private static byte[] gzip(byte[] json){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4);
+        // Compressed once per write rather than once per request, so spend the CPU on a smaller body
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes){{ def.setLevel(Deflater.BEST_COMPRESSION); }}){
+            out.write(json);
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private record Source(TableVersions.Table table, int variants, Supplier<? extends List<?>> loader,
+                          AtomicLong lastRead) { }
+
+    private record Snapshot(long version, List<Body> bodies) { }
+}
@@ -1,43 +1,148 @@
 package com.usforever.service;
 
+import com.usforever.config.CacheConfig;
+import com.usforever.dao.TableVersions;
+import com.usforever.exception.StaleVersionException;
 import com.usforever.dao.NoteDao;
+import com.usforever.model.ChangeEvent;
 import com.usforever.model.Note;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class RestNoteService implements NoteService {
 
     private final NoteDao noteDao;
+    private final ServiceCache cache;
+    private final TableVersions tableVersions;
+    private final ContentAggregates aggregates;
+    private final ResponseSnapshots responseSnapshots;
+    private final ChangeFeed changeFeed;
 
-    public RestNoteService (NoteDao noteDao){
+    public RestNoteService (NoteDao noteDao, CacheManager cacheManager, TableVersions tableVersions,
+                            ContentAggregates aggregates,
+                            ResponseSnapshots responseSnapshots, ChangeFeed changeFeed){
 
         this.noteDao = noteDao;
+        this.cache = new ServiceCache(cacheManager.getCache(CacheConfig.NOTES_CACHE));
+        this.tableVersions = tableVersions;
+        this.aggregates = aggregates;
+        this.responseSnapshots = responseSnapshots;
+        this.changeFeed = changeFeed;
+        changeFeed.onRemoteChange(TableVersions.Table.NOTES, this::applyRemoteChange);
     }
 
     @Override
     public List<Note> getAllNotes() {
-        return noteDao.getAllNotes();
+        return cache.get(ServiceCache.listKey(ServiceCache.ALL, tableVersions.current(TableVersions.Table.NOTES)),
+                () -> List.copyOf(noteDao.getAllNotes()));
+    }
+
+    @Override
+    public void streamAllNotes(Consumer<Note> consumer) {
+        // Streaming is for lists too large to hold, so it deliberately bypasses the cache
+        noteDao.streamAllNotes(consumer);
     }
 
     @Override
     public Note getNoteById(int id) {
-        return noteDao.getNoteById(id);
+        return cache.get(id, () -> noteDao.getNoteById(id));
+    }
+
+    @Override
+    public List<Note> getNotesByIds(Collection<Integer> ids) {
+        return cache.getAll(ids, noteDao::getNotesByIds, Note::getId);
     }
 
     @Override
     public Note createNote(Note newNote) {
-        return noteDao.createNote(newNote);
+        Note note = noteDao.createNote(newNote);
+        cache.evictList(ServiceCache.ALL);
+        responseSnapshots.refresh(TableVersions.Table.NOTES);
+        if (note != null){
+            cache.put(note.getId(), note);
+            aggregates.notesAdded(List.of(note));
+            changeFeed.publish(TableVersions.Table.NOTES, ChangeEvent.CREATED, List.of(note.getId()));
+        }
+        return note;
+    }
+
+    @Override
+    public List<Note> createNotes(List<Note> newNotes) {
+        List<Note> notes = noteDao.createNotes(newNotes);
+        cache.evictList(ServiceCache.ALL);
+        responseSnapshots.refresh(TableVersions.Table.NOTES);
+        for (Note note : notes){
+            cache.put(note.getId(), note);
+        }
+        aggregates.notesAdded(notes);
+        changeFeed.publish(TableVersions.Table.NOTES, ChangeEvent.CREATED, notes.stream().map(Note::getId).toList());
+        return notes;
     }
 
     @Override
     public Note updateNote(Note updatedNote) {
-        return noteDao.updateNote(updatedNote);
+        Note note;
+        try {
+            note = noteDao.updateNote(updatedNote);
+        }
+        catch (StaleVersionException e){
+            // Whatever we hold for this id is older than the row that won
+            cache.evict(updatedNote.getId());
+            throw e;
+        }
+        cache.evictList(ServiceCache.ALL);
+        responseSnapshots.refresh(TableVersions.Table.NOTES);
+        cache.put(updatedNote.getId(), note);
+        changeFeed.publish(TableVersions.Table.NOTES, ChangeEvent.UPDATED, List.of(updatedNote.getId()));
+        return note;
     }
 
     @Override
     public int deleteNote(int id) {
-        return noteDao.deleteNote(id);
+        int rowsDeleted = noteDao.deleteNote(id);
+        if (rowsDeleted > 0){
+            cache.evictList(ServiceCache.ALL);
+            responseSnapshots.refresh(TableVersions.Table.NOTES);
+            cache.evict(id);
+            aggregates.notesRemoved(List.of(id));
+            changeFeed.publish(TableVersions.Table.NOTES, ChangeEvent.DELETED, List.of(id));
+        }
+        return rowsDeleted;
+    }
+
+    @Override
+    public int deleteNotes(Collection<Integer> ids) {
+        int rowsDeleted = noteDao.deleteNotes(ids);
+        if (rowsDeleted > 0){
+            cache.evictList(ServiceCache.ALL);
+            responseSnapshots.refresh(TableVersions.Table.NOTES);
+            ids.forEach(cache::evict);
+            aggregates.notesRemoved(ids);
+            changeFeed.publish(TableVersions.Table.NOTES, ChangeEvent.DELETED, List.copyOf(ids));
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Drops what we hold for notes another instance changed; ChangeFeed has already bumped the version.
+     */
+    private void applyRemoteChange(ChangeEvent event){
+        cache.evictList(ServiceCache.ALL);
+        responseSnapshots.refresh(TableVersions.Table.NOTES);
+        if (ChangeEvent.RESET.equals(event.getType())){
+            cache.clear();
+            return;
+        }
+        event.getIds().forEach(cache::evict);
+        if (ChangeEvent.DELETED.equals(event.getType())){
+            aggregates.notesRemoved(event.getIds());
+        } else {
+            aggregates.notesAdded(noteDao.getNotesByIds(event.getIds()));
+        }
     }
 }
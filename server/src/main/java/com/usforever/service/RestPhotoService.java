@@ -1,43 +1,263 @@
 package com.usforever.service;
 
+import com.usforever.config.CacheConfig;
 import com.usforever.dao.PhotoDao;
+import com.usforever.dao.TableVersions;
+import com.usforever.model.CategoryCount;
+import com.usforever.model.ChangeEvent;
 import com.usforever.model.Photo;
+import com.usforever.model.PhotoPage;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class RestPhotoService implements PhotoService{
 
+    // shuffle_key is assigned from [0, 2^31 - 1) when a photo is inserted
+    private static final long SHUFFLE_KEY_RANGE = 1L << 31;
+    private static final String CATEGORY_KEY_PREFIX = "category:";
+
     private final PhotoDao photoDao;
+    private final ServiceCache cache;
+    private final TableVersions tableVersions;
+    private final MediaStorage mediaStorage;
+    private final ImageDerivatives imageDerivatives;
+    private final ContentAggregates aggregates;
+    private final ResponseSnapshots responseSnapshots;
+    private final ChangeFeed changeFeed;
 
-    public RestPhotoService(PhotoDao photoDao){
+    public RestPhotoService(PhotoDao photoDao, CacheManager cacheManager, TableVersions tableVersions,
+                            MediaStorage mediaStorage, ImageDerivatives imageDerivatives, ContentAggregates aggregates,
+                            ResponseSnapshots responseSnapshots, ChangeFeed changeFeed){
         this.photoDao = photoDao;
+        this.cache = new ServiceCache(cacheManager.getCache(CacheConfig.PHOTOS_CACHE));
+        this.tableVersions = tableVersions;
+        this.mediaStorage = mediaStorage;
+        this.imageDerivatives = imageDerivatives;
+        this.aggregates = aggregates;
+        this.responseSnapshots = responseSnapshots;
+        this.changeFeed = changeFeed;
+        changeFeed.onRemoteChange(TableVersions.Table.PHOTOS, this::applyRemoteChange);
     }
 
 
     @Override
     public List<Photo> getAllPhotos() {
-        return photoDao.getAllPhotos();
+        String key = ServiceCache.listKey(ServiceCache.ALL, tableVersions.current(TableVersions.Table.PHOTOS));
+        return shuffled(cache.get(key, () -> List.copyOf(photoDao.getAllPhotos())));
     }
 
     @Override
     public List<Photo> getAllPhotosByCategory(String category) {
-        return photoDao.getAllPhotosByCategory(category);
+        String key = ServiceCache.listKey(categoryKey(category), tableVersions.current(TableVersions.Table.PHOTOS));
+        return shuffled(cache.get(key, () -> List.copyOf(photoDao.getAllPhotosByCategory(category))));
+    }
+
+    /**
+     * Every photo carries a random, indexed shuffle_key, so walking the (shuffle_key, id) index gives a
+     * stable pseudo-random order without sorting. The seed picks where on that ring the walk starts:
+     * first the keys from the start point up to the end of the range, then wrapping around to the keys
+     * below it. The cursor is the (shuffle_key, id) of the last photo handed out, and which side of the
+     * start point it falls on tells us whether the walk has already wrapped.
+     */
+    @Override
+    public PhotoPage getPhotoFeed(String seed, String cursor, int limit, String category) {
+        int start = startKeyFor(seed);
+        int afterKey = start;
+        int afterId = 0;
+
+        if (cursor != null && !cursor.isEmpty()){
+            int[] position = decodeCursor(cursor);
+            afterKey = position[0];
+            afterId = position[1];
+        }
+
+        // Fetch one extra photo so we know whether another page exists
+        int wanted = limit + 1;
+        List<Photo> photos = new ArrayList<>(wanted);
+        boolean wrapped = afterKey < start;
+
+        while (photos.size() < wanted){
+            long upperKey = wrapped ? start : SHUFFLE_KEY_RANGE;
+            photos.addAll(photoDao.getPhotosAfterShuffleKey(afterKey, afterId, upperKey, category, wanted - photos.size()));
+            if (photos.size() >= wanted || wrapped){
+                break;
+            }
+            wrapped = true;
+            afterKey = -1;
+            afterId = 0;
+        }
+
+        String nextCursor = null;
+        if (photos.size() > limit){
+            photos.remove(limit);
+            Photo last = photos.get(limit - 1);
+            nextCursor = encodeCursor(last.getShuffleKey(), last.getId());
+        }
+        return new PhotoPage(photos, nextCursor);
+    }
+
+    @Override
+    public List<CategoryCount> getCategoryCounts() {
+        return aggregates.getCategoryCounts();
+    }
+
+    @Override
+    public void streamAllPhotos(Consumer<Photo> consumer) {
+        // Streaming is for lists too large to hold, so it deliberately bypasses the cache
+        photoDao.streamAllPhotos(consumer);
     }
 
     @Override
     public Photo getPhotoById(int id) {
-        return photoDao.getPhotoById(id);
+        return cache.get(id, () -> photoDao.getPhotoById(id));
+    }
+
+    @Override
+    public List<Photo> getPhotosByIds(Collection<Integer> ids) {
+        return cache.getAll(ids, photoDao::getPhotosByIds, Photo::getId);
     }
 
     @Override
     public Photo createPhoto(Photo newPhoto) {
-        return photoDao.createPhoto(newPhoto);
+        Photo photo = photoDao.createPhoto(newPhoto);
+        evictLists(newPhoto.getCategory());
+        if (photo != null){
+            cache.put(photo.getId(), photo);
+            aggregates.photosAdded(List.of(photo));
+            changeFeed.publish(TableVersions.Table.PHOTOS, ChangeEvent.CREATED, List.of(photo.getId()));
+        }
+        return photo;
+    }
+
+    /**
+     * Stores the uploaded file, makes its resized copies if it is an image, and adds it to the gallery.
+     * The derivatives exist before the photo row does, so no client ever sees a photo without them.
+     */
+    @Override
+    public Photo uploadPhoto(String category, String contentType, InputStream content) throws IOException {
+        String name = mediaStorage.store(content, contentType);
+        Photo photo = new Photo(category, MediaStorage.url(name));
+        if (MediaStorage.isImage(contentType)){
+            ImageDerivatives.Derivatives derivatives = imageDerivatives.create(name);
+            if (derivatives != null){
+                photo.setMediumUrl(MediaStorage.url(derivatives.medium()));
+                photo.setThumbnailUrl(MediaStorage.url(derivatives.thumbnail()));
+                photo.setPlaceholder(derivatives.placeholder());
+            }
+        }
+        return createPhoto(photo);
+    }
+
+    @Override
+    public List<Photo> createPhotos(List<Photo> newPhotos) {
+        List<Photo> photos = photoDao.createPhotos(newPhotos);
+        Set<String> categories = new LinkedHashSet<>();
+        for (Photo photo : photos){
+            categories.add(photo.getCategory());
+            cache.put(photo.getId(), photo);
+        }
+        categories.forEach(this::evictLists);
+        aggregates.photosAdded(photos);
+        changeFeed.publish(TableVersions.Table.PHOTOS, ChangeEvent.CREATED, photos.stream().map(Photo::getId).toList());
+        return photos;
     }
 
     @Override
     public int deletePhoto(int id) {
-        return photoDao.deletePhoto(id);
+        // Only the deleted photo's category list goes stale; if we don't know it, drop them all
+        Photo cached = (Photo) cache.peek(id);
+        int rowsDeleted = photoDao.deletePhoto(id);
+        if (rowsDeleted > 0){
+            evictLists(cached != null ? cached.getCategory() : null);
+            cache.evict(id);
+            aggregates.photosRemoved(List.of(id));
+            changeFeed.publish(TableVersions.Table.PHOTOS, ChangeEvent.DELETED, List.of(id));
+        }
+        return rowsDeleted;
+    }
+
+    @Override
+    public int deletePhotos(Collection<Integer> ids) {
+        int rowsDeleted = photoDao.deletePhotos(ids);
+        if (rowsDeleted > 0){
+            evictLists(null);
+            ids.forEach(cache::evict);
+            aggregates.photosRemoved(ids);
+            changeFeed.publish(TableVersions.Table.PHOTOS, ChangeEvent.DELETED, List.copyOf(ids));
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Drops what we hold for photos another instance changed; ChangeFeed has already bumped the version.
+     * The event doesn't say which categories were touched, so every category list goes.
+     */
+    private void applyRemoteChange(ChangeEvent event){
+        evictLists(null);
+        if (ChangeEvent.RESET.equals(event.getType())){
+            cache.clear();
+            return;
+        }
+        event.getIds().forEach(cache::evict);
+        if (ChangeEvent.DELETED.equals(event.getType())){
+            aggregates.photosRemoved(event.getIds());
+        } else {
+            aggregates.photosAdded(photoDao.getPhotosByIds(event.getIds()));
+        }
+    }
+
+    private void evictLists(String category){
+        responseSnapshots.refresh(TableVersions.Table.PHOTOS);
+        cache.evictList(ServiceCache.ALL);
+        if (category == null){
+            cache.evictIf(key -> key instanceof String name && name.startsWith(CATEGORY_KEY_PREFIX));
+            return;
+        }
+        cache.evictList(categoryKey(category));
+    }
+
+    private static String categoryKey(String category){
+        return CATEGORY_KEY_PREFIX + (category == null ? "" : category.toLowerCase(Locale.ROOT));
+    }
+
+    private static List<Photo> shuffled(List<Photo> photos){
+        // The gallery is shown in a fresh random order on every load, so shuffle a copy of the cached list
+        List<Photo> copy = new ArrayList<>(photos);
+        Collections.shuffle(copy);
+        return copy;
+    }
+
+    private static int startKeyFor(String seed){
+        // Spread the seed's hash over the whole key range so similar seeds start far apart
+        long mixed = seed.hashCode() * 0x9E3779B97F4A7C15L;
+        return (int) ((mixed >>> 33) % (SHUFFLE_KEY_RANGE - 1));
+    }
+
+    private static String encodeCursor(int shuffleKey, int id){
+        String position = shuffleKey + "." + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int[] decodeCursor(String cursor){
+        String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = position.split("\\.");
+        if (parts.length != 2){
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
     }
 }
@@ -0,0 +1,85 @@
+package com.usforever.service;
+
+import com.usforever.dao.RefreshTokenDao;
+import com.usforever.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Rotating refresh tokens.
+ *
+ * A token is 256 random bits, so a single SHA-256 is enough to store it safely. There is nothing to
+ * brute-force the way there is with a password, and redeeming one costs a hash and a primary-key
+ * lookup, not a BCrypt round. Each redemption uses the token up and hands out its successor. If a
+ * used token ever comes back, someone kept a copy, so the whole chain descended from that login is
+ * revoked.
+ */
+@Service
+public class RestRefreshTokenService implements RefreshTokenService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestRefreshTokenService.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenDao refreshTokenDao;
+    private final long validitySeconds;
+    private final SecureRandom random = new SecureRandom();
+
+    public RestRefreshTokenService(RefreshTokenDao refreshTokenDao,
+                                   @Value("${jwt.refresh-token-validity-in-seconds}") long validitySeconds){
+        this.refreshTokenDao = refreshTokenDao;
+        this.validitySeconds = validitySeconds;
+    }
+
+    @Override
+    public String issueToken(User user) {
+        // Each login is a chance to clear out this user's dead tokens
+        refreshTokenDao.deleteExpiredTokens(user.getId());
+        String token = newToken();
+        refreshTokenDao.createToken(hash(token), user.getId(), UUID.randomUUID(), validitySeconds);
+        return token;
+    }
+
+    @Override
+    public Rotation rotateToken(String refreshToken) {
+        byte[] tokenHash = hash(refreshToken);
+        String successor = newToken();
+        User user = refreshTokenDao.rotateToken(tokenHash, hash(successor), validitySeconds);
+        if (user != null){
+            return new Rotation(user, successor);
+        }
+        int revoked = refreshTokenDao.revokeFamilyOfUsedToken(tokenHash);
+        if (revoked > 0){
+            LOG.warn("A used refresh token was presented again; revoked {} tokens from that login", revoked);
+        }
+        return null;
+    }
+
+    @Override
+    public void revokeToken(String refreshToken) {
+        refreshTokenDao.revokeFamily(hash(refreshToken));
+    }
+
+    private String newToken(){
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] hash(String token){
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
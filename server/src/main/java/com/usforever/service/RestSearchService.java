@@ -0,0 +1,63 @@
+package com.usforever.service;
+
+import com.usforever.dao.SearchDao;
+import com.usforever.model.SearchHit;
+import com.usforever.model.SearchPage;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+@Service
+public class RestSearchService implements SearchService{
+
+    private final SearchDao searchDao;
+
+    public RestSearchService(SearchDao searchDao){
+        this.searchDao = searchDao;
+    }
+
+    /**
+     * Results aren't cached: each query is its own key and the indexes already make a page cheap.
+     * The cursor is the (rank, type, id) of the last hit handed out. The rank travels as its exact
+     * float bits, so the next page resumes at precisely that hit even when others tie with it.
+     */
+    @Override
+    public SearchPage search(String query, String cursor, int limit) {
+        // Fetch one extra hit so we know whether another page exists
+        int wanted = limit + 1;
+        List<SearchHit> hits;
+        if (cursor != null && !cursor.isEmpty()){
+            Position after = decodeCursor(cursor);
+            hits = searchDao.searchAfter(query, after.rank(), after.type(), after.id(), wanted);
+        } else {
+            hits = searchDao.search(query, wanted);
+        }
+
+        hits = new ArrayList<>(hits);
+        String nextCursor = null;
+        if (hits.size() > limit){
+            hits.remove(limit);
+            nextCursor = encodeCursor(hits.get(limit - 1));
+        }
+        return new SearchPage(hits, nextCursor);
+    }
+
+    private static String encodeCursor(SearchHit last){
+        String position = Float.floatToIntBits(last.getRank()) + "." + last.getType() + "." + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Position decodeCursor(String cursor){
+        String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = position.split("\\.");
+        if (parts.length != 3 || !(SearchHit.NOTE.equals(parts[1]) || SearchHit.TIMELINE.equals(parts[1]))){
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return new Position(Float.intBitsToFloat(Integer.parseInt(parts[0])), parts[1], Integer.parseInt(parts[2]));
+    }
+
+    private record Position(float rank, String type, int id) { }
+}
@@ -0,0 +1,19 @@
+package com.usforever.service;
+
+import com.usforever.model.Stats;
+import org.springframework.stereotype.Service;
+
+@Service
+public class RestStatsService implements StatsService{
+
+    private final ContentAggregates aggregates;
+
+    public RestStatsService(ContentAggregates aggregates){
+        this.aggregates = aggregates;
+    }
+
+    @Override
+    public Stats getStats() {
+        return aggregates.getStats();
+    }
+}
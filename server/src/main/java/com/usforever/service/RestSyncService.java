@@ -0,0 +1,54 @@
+package com.usforever.service;
+
+import com.usforever.dao.SyncDao;
+import com.usforever.model.SyncChanges;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+@Service
+public class RestSyncService implements SyncService {
+
+    private final SyncDao syncDao;
+
+    public RestSyncService(SyncDao syncDao){
+        this.syncDao = syncDao;
+    }
+
+    /**
+     * Reads straight from the database rather than the service caches: a cached list can predate the
+     * watermark, and a change it is missing would then never be sent.
+     *
+     * The watermark is taken before the rows are read, so a write committing in between is returned
+     * now and again next time, never neither.
+     */
+    @Override
+    public SyncChanges sync(String since) {
+        Long after = since == null || since.isEmpty() ? null : decodeToken(since);
+        String token = encodeToken(syncDao.watermark());
+        if (after == null){
+            return new SyncChanges(true, syncDao.getNotesChangedSince(null), syncDao.getPhotosChangedSince(null),
+                    syncDao.getTimelineChangedSince(null), List.of(), List.of(), List.of(), token);
+        }
+        return new SyncChanges(false,
+                syncDao.getNotesChangedSince(after), syncDao.getPhotosChangedSince(after),
+                syncDao.getTimelineChangedSince(after),
+                syncDao.getDeletedNoteIdsSince(after), syncDao.getDeletedPhotoIdsSince(after),
+                syncDao.getDeletedTimelineIdsSince(after), token);
+    }
+
+    private static String encodeToken(long watermark){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(watermark).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodeToken(String token){
+        // Base64 and Long.parseLong both throw IllegalArgumentException for garbage
+        long watermark = Long.parseLong(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        if (watermark < 0){
+            throw new IllegalArgumentException("Malformed token");
+        }
+        return watermark;
+    }
+}
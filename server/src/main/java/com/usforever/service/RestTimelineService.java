@@ -1,43 +1,149 @@
 package com.usforever.service;
 
 
+import com.usforever.config.CacheConfig;
+import com.usforever.dao.TableVersions;
+import com.usforever.exception.StaleVersionException;
 import com.usforever.dao.TimelineDao;
+import com.usforever.model.ChangeEvent;
 import com.usforever.model.Timeline;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class RestTimelineService implements TimelineService {
 
     private final TimelineDao timelineDao;
+    private final ServiceCache cache;
+    private final TableVersions tableVersions;
+    private final ContentAggregates aggregates;
+    private final ResponseSnapshots responseSnapshots;
+    private final ChangeFeed changeFeed;
 
-    public RestTimelineService (TimelineDao timelineDao){
+    public RestTimelineService (TimelineDao timelineDao, CacheManager cacheManager, TableVersions tableVersions,
+                                ContentAggregates aggregates,
+                            ResponseSnapshots responseSnapshots, ChangeFeed changeFeed){
         this.timelineDao = timelineDao;
+        this.cache = new ServiceCache(cacheManager.getCache(CacheConfig.TIMELINE_CACHE));
+        this.tableVersions = tableVersions;
+        this.aggregates = aggregates;
+        this.responseSnapshots = responseSnapshots;
+        this.changeFeed = changeFeed;
+        changeFeed.onRemoteChange(TableVersions.Table.TIMELINE, this::applyRemoteChange);
     }
 
     @Override
     public List<Timeline> getAllTimeline() {
-        return timelineDao.getAllTimeline();
+        return cache.get(ServiceCache.listKey(ServiceCache.ALL, tableVersions.current(TableVersions.Table.TIMELINE)),
+                () -> List.copyOf(timelineDao.getAllTimeline()));
+    }
+
+    @Override
+    public void streamAllTimeline(Consumer<Timeline> consumer) {
+        // Streaming is for lists too large to hold, so it deliberately bypasses the cache
+        timelineDao.streamAllTimeline(consumer);
     }
 
     @Override
     public Timeline getTimelineById(int id) {
-        return timelineDao.getTimelineById(id);
+        return cache.get(id, () -> timelineDao.getTimelineById(id));
+    }
+
+    @Override
+    public List<Timeline> getTimelineByIds(Collection<Integer> ids) {
+        return cache.getAll(ids, timelineDao::getTimelineByIds, Timeline::getId);
     }
 
     @Override
     public Timeline createTimeline(Timeline newTimeline) {
-        return timelineDao.createTimeline(newTimeline);
+        Timeline timeline = timelineDao.createTimeline(newTimeline);
+        cache.evictList(ServiceCache.ALL);
+        responseSnapshots.refresh(TableVersions.Table.TIMELINE);
+        if (timeline != null){
+            cache.put(timeline.getId(), timeline);
+            aggregates.timelineSaved(List.of(timeline));
+            changeFeed.publish(TableVersions.Table.TIMELINE, ChangeEvent.CREATED, List.of(timeline.getId()));
+        }
+        return timeline;
+    }
+
+    @Override
+    public List<Timeline> createTimelines(List<Timeline> newTimelines) {
+        List<Timeline> timelines = timelineDao.createTimelines(newTimelines);
+        cache.evictList(ServiceCache.ALL);
+        responseSnapshots.refresh(TableVersions.Table.TIMELINE);
+        for (Timeline timeline : timelines){
+            cache.put(timeline.getId(), timeline);
+        }
+        aggregates.timelineSaved(timelines);
+        changeFeed.publish(TableVersions.Table.TIMELINE, ChangeEvent.CREATED, timelines.stream().map(Timeline::getId).toList());
+        return timelines;
     }
 
     @Override
     public Timeline updateTimeline(Timeline updatedTimeline) {
-        return timelineDao.updateTimeline(updatedTimeline);
+        Timeline timeline;
+        try {
+            timeline = timelineDao.updateTimeline(updatedTimeline);
+        }
+        catch (StaleVersionException e){
+            // Whatever we hold for this id is older than the row that won
+            cache.evict(updatedTimeline.getId());
+            throw e;
+        }
+        cache.evictList(ServiceCache.ALL);
+        responseSnapshots.refresh(TableVersions.Table.TIMELINE);
+        cache.put(updatedTimeline.getId(), timeline);
+        aggregates.timelineSaved(List.of(timeline));
+        changeFeed.publish(TableVersions.Table.TIMELINE, ChangeEvent.UPDATED, List.of(updatedTimeline.getId()));
+        return timeline;
     }
 
     @Override
     public int deleteTimeline(int id) {
-        return timelineDao.deleteTimeline(id);
+        int rowsDeleted = timelineDao.deleteTimeline(id);
+        if (rowsDeleted > 0){
+            cache.evictList(ServiceCache.ALL);
+            responseSnapshots.refresh(TableVersions.Table.TIMELINE);
+            cache.evict(id);
+            aggregates.timelineRemoved(List.of(id));
+            changeFeed.publish(TableVersions.Table.TIMELINE, ChangeEvent.DELETED, List.of(id));
+        }
+        return rowsDeleted;
+    }
+
+    @Override
+    public int deleteTimelines(Collection<Integer> ids) {
+        int rowsDeleted = timelineDao.deleteTimelines(ids);
+        if (rowsDeleted > 0){
+            cache.evictList(ServiceCache.ALL);
+            responseSnapshots.refresh(TableVersions.Table.TIMELINE);
+            ids.forEach(cache::evict);
+            aggregates.timelineRemoved(ids);
+            changeFeed.publish(TableVersions.Table.TIMELINE, ChangeEvent.DELETED, List.copyOf(ids));
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Drops what we hold for entries another instance changed; ChangeFeed has already bumped the version.
+     */
+    private void applyRemoteChange(ChangeEvent event){
+        cache.evictList(ServiceCache.ALL);
+        responseSnapshots.refresh(TableVersions.Table.TIMELINE);
+        if (ChangeEvent.RESET.equals(event.getType())){
+            cache.clear();
+            return;
+        }
+        event.getIds().forEach(cache::evict);
+        if (ChangeEvent.DELETED.equals(event.getType())){
+            aggregates.timelineRemoved(event.getIds());
+        } else {
+            aggregates.timelineSaved(timelineDao.getTimelineByIds(event.getIds()));
+        }
     }
 }
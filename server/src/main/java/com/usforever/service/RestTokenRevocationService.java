@@ -0,0 +1,122 @@
+package com.usforever.service;
+
+import com.usforever.dao.RevokedTokenDao;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Revoked access tokens, checked on every authenticated request.
+ *
+ * The revoked_tokens table is the record; this instance holds a copy of it in memory, reloaded every
+ * few seconds, so a check never waits on the database. Almost every token checked isn't revoked, and
+ * for those a Bloom filter answers after a few bit lookups; only its rare positives, real or false,
+ * go on to the exact set. A token revoked here is in memory at once. One revoked through another
+ * instance is honoured here from the next reload, and until the first load succeeds nothing is
+ * treated as revoked.
+ */
+@Service
+public class RestTokenRevocationService implements TokenRevocationService, SmartInitializingSingleton, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestTokenRevocationService.class);
+
+    private final RevokedTokenDao revokedTokenDao;
+    private final int expectedTokens;
+    private final double falsePositiveRate;
+    private final long refreshSeconds;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("token-revocation-refresh").daemon().factory());
+
+    // Taken by reloads and revocations, so a reload can't replace the set without a revocation it didn't read
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Revoked revoked;
+
+    public RestTokenRevocationService(RevokedTokenDao revokedTokenDao, MeterRegistry meterRegistry,
+                                      @Value("${jwt.revocation.expected-tokens}") int expectedTokens,
+                                      @Value("${jwt.revocation.false-positive-rate}") double falsePositiveRate,
+                                      @Value("${jwt.revocation.refresh-seconds}") long refreshSeconds){
+        this.revokedTokenDao = revokedTokenDao;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshSeconds = refreshSeconds;
+        this.revoked = new Revoked(new BloomFilter(expectedTokens, falsePositiveRate), ConcurrentHashMap.newKeySet());
+        Gauge.builder("jwt.revoked-tokens", this, service -> service.revoked.ids().size())
+                .description("Unexpired revoked access tokens held in memory")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        refresh();
+        refresher.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    @Override
+    public void revokeToken(String tokenId, Instant expiresAt) {
+        long remainingSeconds = Duration.between(Instant.now(), expiresAt).toSeconds() + 1;
+        if (remainingSeconds <= 0){
+            return;
+        }
+        lock.lock();
+        try {
+            revokedTokenDao.revokeToken(tokenId, remainingSeconds);
+            Revoked current = revoked;
+            current.filter().add(tokenId);
+            current.ids().add(tokenId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isRevoked(String tokenId) {
+        Revoked current = revoked;
+        return current.filter().mightContain(tokenId) && current.ids().contains(tokenId);
+    }
+
+    /**
+     * Replaces the in-memory copy with the table's unexpired rows, after purging the expired ones. On
+     * failure the current copy stays in place until the next attempt.
+     */
+    private void refresh(){
+        lock.lock();
+        try {
+            revokedTokenDao.deleteExpiredTokens();
+            List<String> tokenIds = revokedTokenDao.getRevokedTokenIds();
+            // Sized with room to grow, since revocations made here between reloads go into the same filter
+            BloomFilter filter = new BloomFilter(Math.max(expectedTokens, 2 * tokenIds.size()), falsePositiveRate);
+            Set<String> ids = ConcurrentHashMap.newKeySet(tokenIds.size());
+            for (String tokenId : tokenIds){
+                filter.add(tokenId);
+                ids.add(tokenId);
+            }
+            revoked = new Revoked(filter, ids);
+        } catch (RuntimeException e){
+            LOG.warn("Could not reload revoked tokens; keeping the {} already loaded", revoked.ids().size(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Revoked(BloomFilter filter, Set<String> ids) { }
+}
@@ -0,0 +1,139 @@
+package com.usforever.service;
+
+import com.usforever.config.CacheConfig;
+import com.usforever.dao.UserDao;
+import com.usforever.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Users by email, cached under the normalized (trimmed, lower-cased) address.
+ *
+ * Every known address is also in a Bloom filter, so a lookup of an address nobody registered, which
+ * is what credential stuffing mostly is, is answered without the cache or the database. Addresses
+ * registered through another server instance aren't in this instance's filter yet, so a miss first
+ * checks whether the number of users has changed, at most once a second, and reloads the filter if
+ * it has. A new user can therefore sign in on any instance within a second. For the same reason an
+ * address the filter lets through but the database doesn't have (a false positive) isn't cached as
+ * missing, since it may be registered elsewhere at any time.
+ */
+@Service
+public class RestUserService implements UserService, SmartInitializingSingleton {
+
+    private static final long CATCH_UP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final UserDao userDao;
+    private final ServiceCache cache;
+    private final int expectedUsers;
+    private final double falsePositiveRate;
+    private final Counter rejected;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong nextCatchUp = new AtomicLong(System.nanoTime());
+    private volatile BloomFilter knownEmails;
+    // Users in the filter; guarded by lock
+    private int knownCount;
+
+    public RestUserService(UserDao userDao, CacheManager cacheManager,
+                           @Value("${users.bloom.expected-users}") int expectedUsers,
+                           @Value("${users.bloom.false-positive-rate}") double falsePositiveRate,
+                           MeterRegistry meterRegistry){
+        this.userDao = userDao;
+        this.cache = new ServiceCache(cacheManager.getCache(CacheConfig.USERS_CACHE));
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.knownEmails = new BloomFilter(expectedUsers, falsePositiveRate);
+        this.rejected = Counter.builder("users.unknown-email")
+                .description("Email lookups answered by the Bloom filter without reaching the database")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        lock.lock();
+        try {
+            reload();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        String key = normalize(email);
+        if (!knownEmails.mightContain(key) && !(catchUp() && knownEmails.mightContain(key))){
+            rejected.increment();
+            return null;
+        }
+        return cache.get(key, () -> userDao.getUserByEmail(key), false);
+    }
+
+    @Override
+    public User createUser(User newUser) {
+        newUser.setEmail(normalize(newUser.getEmail()));
+        User user = userDao.createUser(newUser);
+        lock.lock();
+        try {
+            if (knownCount >= knownEmails.expectedInsertions()){
+                reload();
+            } else {
+                knownEmails.add(user.getEmail());
+                knownCount++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        cache.put(user.getEmail(), user);
+        return user;
+    }
+
+    static String normalize(String email){
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reloads the filter if users were registered elsewhere since we last looked. Runs at most once per
+     * interval however many lookups miss. Serial ids can commit out of order across instances, so
+     * this compares counts rather than looking for ids above the newest one we know.
+     *
+     * @return whether the filter was reloaded
+     */
+    private boolean catchUp(){
+        long next = nextCatchUp.get();
+        long now = System.nanoTime();
+        if (now - next < 0 || !nextCatchUp.compareAndSet(next, now + CATCH_UP_INTERVAL_NANOS)){
+            return false;
+        }
+        int count = userDao.countUsers();
+        lock.lock();
+        try {
+            if (count == knownCount){
+                return false;
+            }
+            reload();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void reload(){
+        List<User> users = userDao.getUsers();
+        // Sized with room to grow, since a filter holding more than it was sized for loses accuracy
+        BloomFilter filter = new BloomFilter(Math.max(expectedUsers, 2 * users.size()), falsePositiveRate);
+        users.forEach(user -> filter.add(normalize(user.getEmail())));
+        knownEmails = filter;
+        knownCount = users.size();
+    }
+}
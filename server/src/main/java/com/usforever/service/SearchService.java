@@ -0,0 +1,7 @@
+package com.usforever.service;
+
+import com.usforever.model.SearchPage;
+
+public interface SearchService {
+    SearchPage search(String query, String cursor, int limit);
+}
@@ -0,0 +1,196 @@
+package com.usforever.service;
+
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-through view of one table's cache for the Rest*Service classes.
+ *
+ * Lists are stored under a key built by {@link #listKey} from the list's name ({@link #ALL} or e.g. a
+ * category) and the table version it was read at, so a write elsewhere can never leave an old list
+ * looking current. Single rows are stored under their integer id. Missing rows are cached as null so
+ * repeated lookups of a bad id don't reach the database either.
+ */
+class ServiceCache {
+
+    static final String ALL = "all";
+    private static final char VERSION_SEPARATOR = '@';
+
+    private final Cache cache;
+    // Loads in progress, so concurrent misses on one key share a single DAO call
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    // Bumped by every put and evict; a load that overlaps one of them doesn't cache what it read
+    private final AtomicLong writes = new AtomicLong();
+
+    ServiceCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cached value for the key, loading and caching it on a miss.
+     *
+     * The loader runs on the calling thread outside any lock. Cache.get(key, loader) would run it inside
+     * the cache map's compute, which holds a monitor for the whole DAO call and so pins a virtual thread
+     * to its carrier. Concurrent misses on the same key wait for the first caller's load instead.
+     */
+    <T> T get(Object key, Callable<T> loader) {
+        return get(key, loader, true);
+    }
+
+    /**
+     * Like {@link #get(Object, Callable)}, but a null from the loader is only cached if cacheMissing is
+     * set, for keys whose row may appear without a write through this instance.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(Object key, Callable<T> loader, boolean cacheMissing) {
+        Cache.ValueWrapper cached = cache.get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> inProgress = loading.putIfAbsent(key, load);
+        if (inProgress != null) {
+            return (T) join(inProgress);
+        }
+
+        try {
+            // Another caller may have finished loading this key between our miss and registering the load
+            cached = cache.get(key);
+            T value;
+            if (cached != null) {
+                value = (T) cached.get();
+            } else {
+                long writesBefore = writes.get();
+                value = loader.call();
+                if (writes.get() == writesBefore && (value != null || cacheMissing)) {
+                    cache.put(key, value);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (Exception e) {
+            load.completeExceptionally(e);
+            if (e instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new Cache.ValueRetrievalException(key, loader, e);
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Looks up several rows by id. Ids already in the cache (including ones cached as missing) are answered
+     * from it, and the rest are loaded with a single call to the loader and cached. Rows come back in the
+     * order of the ids, once each; ids without a row are left out.
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> getAll(Collection<Integer> ids, Function<List<Integer>, List<T>> loader, ToIntFunction<T> idOf) {
+        Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+        Map<Integer, T> rows = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : distinctIds) {
+            Cache.ValueWrapper wrapper = cache.get(id);
+            if (wrapper == null) {
+                missing.add(id);
+            } else if (wrapper.get() != null) {
+                rows.put(id, (T) wrapper.get());
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long writesBefore = writes.get();
+            List<T> loaded = loader.apply(missing);
+            for (T row : loaded) {
+                rows.put(idOf.applyAsInt(row), row);
+            }
+            if (writes.get() == writesBefore) {
+                for (Integer id : missing) {
+                    cache.put(id, rows.get(id));
+                }
+            }
+        }
+
+        List<T> result = new ArrayList<>(rows.size());
+        for (Integer id : distinctIds) {
+            T row = rows.get(id);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    void put(Object key, Object value) {
+        writes.incrementAndGet();
+        cache.put(key, value);
+    }
+
+    void evict(Object key) {
+        writes.incrementAndGet();
+        cache.evict(key);
+    }
+
+    void clear() {
+        writes.incrementAndGet();
+        cache.clear();
+    }
+
+    static String listKey(String list, long version) {
+        return list + VERSION_SEPARATOR + version;
+    }
+
+    /**
+     * Drops every cached version of the named list.
+     */
+    void evictList(String list) {
+        String prefix = list + VERSION_SEPARATOR;
+        evictIf(key -> key instanceof String name && name.startsWith(prefix));
+    }
+
+    void evictIf(Predicate<Object> keyFilter) {
+        writes.incrementAndGet();
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            nativeCache.asMap().keySet().removeIf(keyFilter);
+        } else {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the cached value for a key without loading it.
+     */
+    Object peek(Object key) {
+        Cache.ValueWrapper wrapper = cache.get(key);
+        return wrapper != null ? wrapper.get() : null;
+    }
+
+    private static Object join(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            // Surface the DAO's own exception rather than the future's wrapper
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
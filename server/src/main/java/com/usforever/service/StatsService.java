@@ -0,0 +1,7 @@
+package com.usforever.service;
+
+import com.usforever.model.Stats;
+
+public interface StatsService {
+    Stats getStats();
+}
@@ -0,0 +1,7 @@
+package com.usforever.service;
+
+import com.usforever.model.SyncChanges;
+
+public interface SyncService {
+    SyncChanges sync(String since);
+}
@@ -2,16 +2,26 @@ package com.usforever.service;
 
 import com.usforever.model.Timeline;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TimelineService {
     List<Timeline> getAllTimeline();
 
+    void streamAllTimeline(Consumer<Timeline> consumer);
+
     Timeline getTimelineById(int id);
 
+    List<Timeline> getTimelineByIds(Collection<Integer> ids);
+
     Timeline createTimeline (Timeline newTimeline);
 
+    List<Timeline> createTimelines(List<Timeline> newTimelines);
+
     Timeline updateTimeline (Timeline updatedTimeline);
 
     int deleteTimeline(int id);
+
+    int deleteTimelines(Collection<Integer> ids);
 }
@@ -0,0 +1,16 @@
+package com.usforever.service;
+
+import java.time.Instant;
+
+public interface TokenRevocationService {
+
+    /**
+     * Revokes an access token, by its jti claim, until it expires.
+     */
+    void revokeToken(String tokenId, Instant expiresAt);
+
+    /**
+     * Whether an access token was revoked. Answered from memory, without touching the database.
+     */
+    boolean isRevoked(String tokenId);
+}
@@ -0,0 +1,13 @@
+package com.usforever.service;
+
+import com.usforever.model.User;
+
+public interface UserService {
+
+    /**
+     * Looks a user up by email, ignoring case and surrounding spaces. Returns null if there is none.
+     */
+    User getUserByEmail(String email);
+
+    User createUser(User newUser);
+}
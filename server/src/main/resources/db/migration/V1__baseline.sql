@@ -0,0 +1,28 @@
+-- The schema exactly as database/create-insert.sql created it before migrations were introduced. A
+-- database built by that script already has these tables, so Flyway records it as baselined at this
+-- version without running it, and applies V2 onwards.
+
+CREATE TABLE notes (
+    id serial NOT NULL,
+    title TEXT,
+    content TEXT,
+    created_at TIMESTAMP DEFAULT NOW(),
+    CONSTRAINT PK_notes PRIMARY KEY (id)
+);
+
+CREATE TABLE photos(
+    id serial NOT NULL,
+    category VARCHAR (50) NOT NULL,
+    img_url VARCHAR NOT NULL,
+    CONSTRAINT PK_photos PRIMARY KEY (id)
+);
+
+CREATE TABLE timeline(
+    id serial NOT NULL,
+    date VARCHAR NOT NULL,
+    title VARCHAR (100) NOT NULL,
+    description VARCHAR NOT NULL,
+    img_url VARCHAR NOT NULL,
+    icon VARCHAR (50) NOT NULL,
+    CONSTRAINT PK_timeline PRIMARY KEY (id)
+);
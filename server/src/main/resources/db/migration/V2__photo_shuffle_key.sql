@@ -0,0 +1,5 @@
+-- The gallery feed pages through photos in a random order fixed per photo; existing rows each get
+-- their own key when the column is added
+ALTER TABLE photos ADD COLUMN shuffle_key INTEGER NOT NULL DEFAULT floor(random() * 2147483647)::int;
+
+CREATE INDEX IX_photos_shuffle_key ON photos (shuffle_key, id);
@@ -0,0 +1,3 @@
+-- Updates carry the version they were based on and fail if the row has moved on since
+ALTER TABLE notes ADD COLUMN version INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE timeline ADD COLUMN version INTEGER NOT NULL DEFAULT 1;
@@ -0,0 +1,10 @@
+-- Generated, so Postgres keeps it in step with every insert and update
+ALTER TABLE notes ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(content, '')), 'B')) STORED;
+ALTER TABLE timeline ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(description, '')), 'B')) STORED;
+
+CREATE INDEX IX_notes_search ON notes USING GIN (search_vector);
+CREATE INDEX IX_timeline_search ON timeline USING GIN (search_vector);
@@ -0,0 +1,4 @@
+-- Resized copies of uploaded images; null for photos that only have an external URL
+ALTER TABLE photos ADD COLUMN medium_url VARCHAR;
+ALTER TABLE photos ADD COLUMN thumbnail_url VARCHAR;
+ALTER TABLE photos ADD COLUMN placeholder VARCHAR;
@@ -0,0 +1,28 @@
+-- deleted_at is set instead of removing the row, so /api/sync can tell clients what was deleted.
+-- change_xid is the transaction that last wrote the row; /api/sync watermarks are in these terms.
+-- Rows that predate this migration are all stamped with its transaction.
+ALTER TABLE notes
+    ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    ADD COLUMN deleted_at TIMESTAMP,
+    ADD COLUMN change_xid xid8 NOT NULL DEFAULT pg_current_xact_id();
+ALTER TABLE photos
+    ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    ADD COLUMN deleted_at TIMESTAMP,
+    ADD COLUMN change_xid xid8 NOT NULL DEFAULT pg_current_xact_id();
+ALTER TABLE timeline
+    ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    ADD COLUMN deleted_at TIMESTAMP,
+    ADD COLUMN change_xid xid8 NOT NULL DEFAULT pg_current_xact_id();
+
+-- Reads only ever want live rows, so the indexes leave tombstones out
+DROP INDEX IX_notes_search;
+CREATE INDEX IX_notes_search ON notes USING GIN (search_vector) WHERE deleted_at IS NULL;
+CREATE INDEX IX_notes_change_xid ON notes (change_xid);
+
+DROP INDEX IX_photos_shuffle_key;
+CREATE INDEX IX_photos_shuffle_key ON photos (shuffle_key, id) WHERE deleted_at IS NULL;
+CREATE INDEX IX_photos_change_xid ON photos (change_xid);
+
+DROP INDEX IX_timeline_search;
+CREATE INDEX IX_timeline_search ON timeline USING GIN (search_vector) WHERE deleted_at IS NULL;
+CREATE INDEX IX_timeline_change_xid ON timeline (change_xid);
@@ -0,0 +1,27 @@
+-- The server has always read users from this table, but the original script never created it, so a
+-- deployed database may already have one made by hand
+CREATE TABLE IF NOT EXISTS users (
+    id serial NOT NULL,
+    name VARCHAR (50) NOT NULL,
+    display_name VARCHAR (50),
+    email VARCHAR (100) NOT NULL UNIQUE,
+    password_hash VARCHAR (200) NOT NULL,
+    role VARCHAR (50) NOT NULL,
+    CONSTRAINT PK_users PRIMARY KEY (id)
+);
+
+-- Only a SHA-256 of each refresh token is kept; the token itself exists only on the client
+CREATE TABLE refresh_tokens (
+    token_hash BYTEA NOT NULL,
+    user_id INTEGER NOT NULL,
+    -- Every token rotated from one login shares a family; presenting a rotated token again revokes the family
+    family UUID NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    -- Set when the token is exchanged for its successor
+    used_at TIMESTAMP,
+    CONSTRAINT PK_refresh_tokens PRIMARY KEY (token_hash),
+    CONSTRAINT FK_refresh_tokens_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE INDEX IX_refresh_tokens_family ON refresh_tokens (family);
+CREATE INDEX IX_refresh_tokens_user_id ON refresh_tokens (user_id);
@@ -0,0 +1,9 @@
+-- Access tokens signed out before they expire, by jti; a row is only needed until the token would have expired anyway
+CREATE TABLE revoked_tokens (
+    token_id UUID NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    CONSTRAINT PK_revoked_tokens PRIMARY KEY (token_id)
+);
+
+CREATE INDEX IX_revoked_tokens_expires_at ON revoked_tokens (expires_at);
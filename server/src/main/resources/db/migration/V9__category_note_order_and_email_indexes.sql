@@ -0,0 +1,13 @@
+-- Photos are filtered by category regardless of case. "category ILIKE ?" can't use a b-tree index, so
+-- keep a lower-cased copy, generated so Postgres keeps it in step, and index it in the order the
+-- category feed pages through
+ALTER TABLE photos ADD COLUMN category_key VARCHAR (50) GENERATED ALWAYS AS (lower(category)) STORED;
+CREATE INDEX IX_photos_category_key ON photos (category_key, shuffle_key, id) WHERE deleted_at IS NULL;
+
+-- The note list is newest first; id breaks ties so the order is the same every time
+CREATE INDEX IX_notes_created_at ON notes (created_at DESC, id) WHERE deleted_at IS NULL;
+
+-- Emails are looked up regardless of case, and addresses differing only in case belong to one user,
+-- which makes the case-sensitive unique constraint redundant
+ALTER TABLE users DROP CONSTRAINT IF EXISTS users_email_key;
+CREATE UNIQUE INDEX UX_users_email ON users (lower(email));
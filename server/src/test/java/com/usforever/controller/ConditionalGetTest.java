@@ -0,0 +1,95 @@
+package com.usforever.controller;
+
+import com.usforever.service.ResponseSnapshots;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionalGetTest {
+
+    @Test
+    void acceptsGzipByNameOrWildcard() {
+        assertTrue(ConditionalGet.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ConditionalGet.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(ConditionalGet.acceptsGzip("*"));
+        assertFalse(ConditionalGet.acceptsGzip("br, deflate"));
+        assertFalse(ConditionalGet.acceptsGzip(null));
+    }
+
+    @Test
+    void zeroQualityRefusesTheCoding() {
+        assertFalse(ConditionalGet.acceptsGzip("gzip;q=0"));
+        assertFalse(ConditionalGet.acceptsGzip("gzip; q=0.000"));
+        assertFalse(ConditionalGet.acceptsGzip("*;q=0"));
+        assertFalse(ConditionalGet.acceptsGzip("*, gzip;q=0"));
+        assertTrue(ConditionalGet.acceptsGzip("*;q=0, gzip"));
+    }
+
+    @Test
+    void malformedQualityIsTakenAsOne() {
+        assertTrue(ConditionalGet.acceptsGzip("gzip;q=x"));
+        assertTrue(ConditionalGet.acceptsGzip("gzip;q="));
+        assertTrue(ConditionalGet.acceptsGzip("gzip;q=NaN"));
+        assertTrue(ConditionalGet.acceptsGzip("gzip;q=-1"));
+        assertTrue(ConditionalGet.acceptsGzip("*;q=x"));
+    }
+
+    private static final String ETAG = "\"notes-7\"";
+    private static final ResponseSnapshots.Body BODY = new ResponseSnapshots.Body(new byte[]{1}, new byte[]{2});
+
+    @Test
+    void gzippedBodyHasItsOwnTag() {
+        ResponseEntity<?> gzip = get("gzip", null);
+        assertEquals("\"notes-7-gz\"", gzip.getHeaders().getETag());
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        ResponseEntity<?> plain = get(null, null);
+        assertEquals(ETAG, plain.getHeaders().getETag());
+
+        // No snapshot yet, so the fallback goes out unencoded
+        ResponseEntity<?> fallback = get("gzip", null, null);
+        assertEquals(ETAG, fallback.getHeaders().getETag());
+        assertEquals("fallback", fallback.getBody());
+        assertEquals("W/\"photos-7-gz\"", ConditionalGet.gzipped("W/\"photos-7\""));
+    }
+
+    @Test
+    void eitherCurrentTagIsNotModified() {
+        ResponseEntity<?> sameCoding = get("gzip", "\"notes-7-gz\"");
+        assertEquals(HttpStatus.NOT_MODIFIED, sameCoding.getStatusCode());
+        assertEquals("\"notes-7-gz\"", response.getHeader(HttpHeaders.ETAG));
+
+        ResponseEntity<?> otherCoding = get("gzip", ETAG);
+        assertEquals(HttpStatus.NOT_MODIFIED, otherCoding.getStatusCode());
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+
+        assertEquals(HttpStatus.OK, get("gzip", "\"notes-6-gz\"").getStatusCode());
+    }
+
+    private MockHttpServletResponse response;
+
+    private ResponseEntity<?> get(String acceptEncoding, String ifNoneMatch) {
+        return get(acceptEncoding, ifNoneMatch, BODY);
+    }
+
+    private ResponseEntity<?> get(String acceptEncoding, String ifNoneMatch, ResponseSnapshots.Body body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/notes");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        response = new MockHttpServletResponse();
+        return ConditionalGet.ifNoneMatch(new ServletWebRequest(request, response), ETAG,
+                () -> body, () -> "fallback");
+    }
+}
@@ -0,0 +1,121 @@
+package com.usforever.dao;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.abort;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The queries the V9 indexes were made for, checked against their plans: the migrations are run into
+ * a scratch schema of the Postgres the server is configured with (SPRING_DB_URL and friends), which is
+ * seeded with enough rows that a scan would cost more than the index, and dropped afterwards. Skipped
+ * when no database is configured or it can't be reached.
+ */
+class IndexPlanTest {
+
+    private static final int ROWS = 20_000;
+
+    private static String url;
+    private static String username;
+    private static String password;
+    private static String schema;
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        url = System.getenv("SPRING_DB_URL");
+        username = System.getenv("SPRING_DB_USERNAME");
+        password = System.getenv("SPRING_DB_PASSWORD");
+        assumeTrue(url != null && !url.isBlank(), "SPRING_DB_URL is not set");
+        try (Connection connection = DriverManager.getConnection(url, username, password)) {
+            connection.isValid(1);
+        } catch (SQLException e) {
+            abort("No database at " + url + ": " + e.getMessage());
+        }
+
+        schema = "index_plan_test_" + Long.toString(System.currentTimeMillis(), 36);
+        Flyway.configure().dataSource(url, username, password).schemas(schema).load().migrate();
+
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO notes (title, content, created_at) " +
+                    "SELECT 'Note ' || i, 'Content ' || i, NOW() - make_interval(mins => i) FROM generate_series(1, " + ROWS + ") i");
+            statement.execute("INSERT INTO photos (category, img_url) " +
+                    "SELECT 'Category' || (i % 50), '/api/media/' || i FROM generate_series(1, " + ROWS + ") i");
+            statement.execute("INSERT INTO users (name, email, password_hash, role) " +
+                    "SELECT 'user' || i, 'User' || i || '@Example.com', 'x', 'ROLE_USER' FROM generate_series(1, " + ROWS + ") i");
+            statement.execute("ANALYZE notes, photos, users");
+        }
+    }
+
+    @AfterAll
+    static void dropSchema() throws SQLException {
+        if (schema == null) {
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA " + schema + " CASCADE");
+        }
+    }
+
+    @Test
+    void categoryFilterUsesTheCategoryIndex() throws SQLException {
+        String plan = explain(JdbcPhotoDao.GET_PHOTOS_BY_CATEGORY, "CATEGORY7");
+        assertTrue(plan.contains("ix_photos_category_key"), plan);
+    }
+
+    @Test
+    void categoryFeedPageIsReadInIndexOrder() throws SQLException {
+        String plan = explain(JdbcPhotoDao.GET_CATEGORY_PHOTOS_AFTER_SHUFFLE_KEY, 0, 0, (long) Integer.MAX_VALUE, "Category7", 24);
+        assertTrue(plan.contains("Index Scan using ix_photos_category_key"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    void noteListIsReadInIndexOrder() throws SQLException {
+        String plan = explain(JdbcNoteDao.GET_ALL_NOTES);
+        assertTrue(plan.contains("Index Scan using ix_notes_created_at"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    void emailLookupUsesTheUniqueIndex() throws SQLException {
+        String plan = explain(JdbcUserDao.GET_USER_BY_EMAIL, "user42@example.com");
+        assertTrue(plan.contains("Index Scan using ux_users_email"), plan);
+    }
+
+    private static Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET search_path TO " + schema);
+        }
+        return connection;
+    }
+
+    private static String explain(String sql, Object... args) throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.usforever.dao;
+
+import com.usforever.model.SearchHit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.abort;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Search titles and snippets are rendered as HTML, so everything in them but the server's own marks
+ * must come back escaped. Runs against a scratch schema like {@link IndexPlanTest}, and is skipped
+ * when no database is configured or it can't be reached.
+ */
+class SearchHeadlineTest {
+
+    private static String url;
+    private static String username;
+    private static String password;
+    private static String schema;
+    private static JdbcSearchDao searchDao;
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        url = System.getenv("SPRING_DB_URL");
+        username = System.getenv("SPRING_DB_USERNAME");
+        password = System.getenv("SPRING_DB_PASSWORD");
+        assumeTrue(url != null && !url.isBlank(), "SPRING_DB_URL is not set");
+        try (Connection connection = DriverManager.getConnection(url, username, password)) {
+            connection.isValid(1);
+        } catch (SQLException e) {
+            abort("No database at " + url + ": " + e.getMessage());
+        }
+
+        schema = "search_headline_test_" + Long.toString(System.currentTimeMillis(), 36);
+        Flyway.configure().dataSource(url, username, password).schemas(schema).load().migrate();
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, username, password);
+        Properties properties = new Properties();
+        properties.setProperty("currentSchema", schema);
+        dataSource.setConnectionProperties(properties);
+        searchDao = new JdbcSearchDao(dataSource, new JdbcBulkhead(4, 1, 1, 1000, new SimpleMeterRegistry()), 100);
+
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO " + schema + ".notes (title, content) " +
+                    "VALUES ('<b>x</b> <mark>y</mark>', 'Some <b>x</b> <mark>y</mark> & < ' || chr(2) || 'x' || chr(3))");
+        }
+    }
+
+    @AfterAll
+    static void dropSchema() throws SQLException {
+        if (schema == null) {
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA " + schema + " CASCADE");
+        }
+    }
+
+    @Test
+    void storedMarkupIsEscapedAndOnlyMatchesAreMarked() {
+        List<SearchHit> hits = searchDao.search("x", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals("&lt;b&gt;<mark>x</mark>&lt;/b&gt; &lt;mark&gt;y&lt;/mark&gt;", hits.get(0).getTitle());
+        // Fragments leave out whole tags but keep the rest. The marker characters stored around the
+        // second x are dropped, so the only marks are the server's own, one per match
+        String snippet = hits.get(0).getSnippet();
+        assertEquals(2, snippet.split("<mark>x</mark>", -1).length - 1, snippet);
+        String text = snippet.replace("<mark>", "").replace("</mark>", "");
+        assertFalse(text.contains("<") || text.contains(">") || text.contains("\u0002"), snippet);
+        assertTrue(text.contains("&amp; &lt;"), snippet);
+    }
+}
@@ -0,0 +1,70 @@
+package com.usforever.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.filters.RemoteIpFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the filter behind Tomcat's RemoteIpFilter, the filter form of the RemoteIpValve that
+ * server.forward-headers-strategy=native installs, so client addresses come from X-Forwarded-For
+ * exactly as they do in the running server.
+ */
+class RateLimitFilterTest {
+
+    private static final String PROXY = "10.0.0.5";
+
+    private final RemoteIpFilter remoteIpFilter = new RemoteIpFilter();
+    // Two logins at once, and no refill worth counting within a test
+    private final RateLimitFilter rateLimitFilter = new RateLimitFilter(true, 2, 1, 60, 600, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void initRemoteIpFilter() throws ServletException {
+        remoteIpFilter.init(new MockFilterConfig());
+    }
+
+    @Test
+    void clientsBehindOneProxyAreLimitedSeparately() throws Exception {
+        assertEquals(HttpStatus.OK.value(), login(PROXY, "203.0.113.1"));
+        assertEquals(HttpStatus.OK.value(), login(PROXY, "203.0.113.1"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), login(PROXY, "203.0.113.1"));
+
+        assertEquals(HttpStatus.OK.value(), login(PROXY, "203.0.113.2"));
+        assertEquals(HttpStatus.OK.value(), login(PROXY, "203.0.113.2"));
+    }
+
+    @Test
+    void forwardedForIsIgnoredFromUntrustedAddresses() throws Exception {
+        // A client on the internet can't pick its own bucket by sending the header itself
+        assertEquals(HttpStatus.OK.value(), login("198.51.100.7", "203.0.113.1"));
+        assertEquals(HttpStatus.OK.value(), login("198.51.100.7", "203.0.113.2"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), login("198.51.100.7", "203.0.113.3"));
+    }
+
+    private int login(String remoteAddr, String forwardedFor) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/login");
+        request.setServletPath("/api/login");
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+            }
+        }, remoteIpFilter, rateLimitFilter).doFilter(request, response);
+        return response.getStatus();
+    }
+}
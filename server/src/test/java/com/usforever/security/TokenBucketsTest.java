@@ -0,0 +1,62 @@
+package com.usforever.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000 * SECOND);
+    // 5 at once, then one every 2 seconds
+    private final TokenBuckets buckets = new TokenBuckets(5, 30, 4, clock::get);
+
+    @Test
+    void allowsABurstOfCapacityThenOneTokenPerInterval() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, buckets.tryAcquire("10.0.0.1"), "request " + i);
+        }
+        assertEquals(2 * SECOND, buckets.tryAcquire("10.0.0.1"));
+
+        clock.addAndGet(SECOND);
+        assertEquals(SECOND, buckets.tryAcquire("10.0.0.1"));
+
+        clock.addAndGet(SECOND);
+        assertEquals(0, buckets.tryAcquire("10.0.0.1"));
+        assertTrue(buckets.tryAcquire("10.0.0.1") > 0);
+    }
+
+    @Test
+    void clientsHaveTheirOwnBuckets() {
+        for (int i = 0; i < 5; i++) {
+            buckets.tryAcquire("10.0.0.1");
+        }
+        assertTrue(buckets.tryAcquire("10.0.0.1") > 0);
+        assertEquals(0, buckets.tryAcquire("10.0.0.2"));
+    }
+
+    @Test
+    void dropsBucketsThatHaveRefilledAndStartsThemOverFull() {
+        for (int client = 0; client < 100; client++) {
+            assertEquals(0, buckets.tryAcquire("10.0.0." + client));
+        }
+        assertEquals(100, buckets.size());
+
+        // Long enough for every bucket to refill, then one request into each stripe
+        clock.addAndGet(20 * SECOND);
+        for (int client = 0; client < 100; client++) {
+            buckets.tryAcquire("10.0.1." + client);
+        }
+        assertEquals(100, buckets.size());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, buckets.tryAcquire("10.0.0.1"), "request " + i);
+        }
+        assertTrue(buckets.tryAcquire("10.0.0.1") > 0);
+    }
+}
@@ -0,0 +1,42 @@
+package com.usforever.security.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenProviderTest {
+
+    @Test
+    void everyRequestGetsItsOwnAuthentication() {
+        byte[] secret = new byte[64];
+        Arrays.fill(secret, (byte) 7);
+        TokenProvider tokenProvider = new TokenProvider(Base64.getEncoder().encodeToString(secret), 900, 900, 100,
+                new SimpleMeterRegistry());
+        tokenProvider.afterPropertiesSet();
+        String token = tokenProvider.createToken(new UsernamePasswordAuthenticationToken("someone@example.com", "",
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))), false);
+
+        Authentication first = tokenProvider.resolveAuthentication(token);
+        first.setAuthenticated(false);
+        ((UsernamePasswordAuthenticationToken) first).eraseCredentials();
+
+        // The second comes from the cache, and is untouched by what was done to the first
+        Authentication second = tokenProvider.resolveAuthentication(token);
+        assertNotSame(first, second);
+        assertTrue(second.isAuthenticated());
+        assertEquals(token, second.getCredentials());
+        assertEquals("someone@example.com", second.getName());
+        assertNotNull(TokenProvider.getTokenId(second));
+    }
+}
@@ -0,0 +1,34 @@
+package com.usforever.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The user lookup trusts a "no" from the filter without asking the database, so a false negative
+ * would lock a registered user out.
+ */
+class BloomFilterTest {
+
+    private static final int USERS = 10_000;
+
+    @Test
+    void neverForgetsAnAddedValueAndStaysNearItsFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(USERS, 0.01);
+        for (int i = 0; i < USERS; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < USERS; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"), "lost user" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < USERS; i++) {
+            if (filter.mightContain("stranger" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < USERS * 0.02, falsePositives + " false positives");
+    }
+}
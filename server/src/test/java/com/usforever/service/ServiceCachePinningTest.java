@@ -0,0 +1,61 @@
+package com.usforever.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every cache miss in the Rest*Service classes runs a blocking DAO call, so with virtual threads
+ * enabled it must not run while a monitor is held, or the virtual thread pins its carrier for the
+ * length of the query. JFR reports each such block as a jdk.VirtualThreadPinned event.
+ */
+class ServiceCachePinningTest {
+
+    private static final Duration SIMULATED_QUERY = Duration.ofMillis(50);
+
+    @Test
+    void loadingOnAMissDoesNotPinTheCarrierThread() throws Exception {
+        ServiceCache cache = new ServiceCache(new CaffeineCache("test", Caffeine.newBuilder().build()));
+        AtomicInteger loads = new AtomicInteger();
+        List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                // Many readers of a few keys: concurrent misses on the same key have to wait for one load
+                List<Future<String>> results = new CopyOnWriteArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    int key = i % 4;
+                    results.add(executor.submit(() -> cache.get(key, () -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(SIMULATED_QUERY);
+                        return "row " + key;
+                    })));
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    assertEquals("row " + (i % 4), results.get(i).get());
+                }
+            }
+            recording.stop();
+        }
+
+        assertTrue(pinned.isEmpty(), () -> "pinned while loading: " + pinned.get(0));
+        assertTrue(loads.get() <= 8, () -> "expected concurrent misses to share a load, got " + loads.get() + " loads");
+    }
+}